@@ -0,0 +1,54 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import com.kitchenreceiptprint.model.DatabaseModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration reads done on the print path, against a scratch H2 database.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dkitchenreceiptprint.db=jdbc:h2:./target/krp-bench-config")
+@State(Scope.Benchmark)
+public class ConfigurationBenchmark {
+    private DatabaseModel model;
+
+    @Setup
+    public void setup() {
+        DatabaseModel.createDatabase();
+        model = DatabaseModel.getInstance();
+        model.saveConfiguration(Map.of("ftp_server", "localhost", "interval", "60"),
+                List.of("Cuisine chaude", "Cuisine froide", "Bar"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.closeConnection();
+    }
+
+    @Benchmark
+    public String getConfiguration() {
+        return model.getConfiguration("ftp_server");
+    }
+
+    @Benchmark
+    public List<String> getAllPrinter() {
+        return model.getAllPrinter();
+    }
+}
@@ -0,0 +1,145 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import com.kitchenreceiptprint.model.RenderedOrder;
+import com.kitchenreceiptprint.util.EscPosUtil;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a rendered kitchen ticket to ESC/POS raster commands, and sending of the ticket
+ * to a file-backed fake printer. The fake printer is emptied before every send, and what it
+ * received is checked to be one well-formed ticket: ESC @, GS v 0 bands of PRINTER_WIDTH / 8
+ * bytes per row, then the feed and cut.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class EscPosBenchmark {
+    private static final int DPI = 203;
+    private static final int PRINTER_WIDTH = 576;
+    private static final int BYTES_PER_ROW = PRINTER_WIDTH / 8;
+    private static final byte[] INITIALIZE = {0x1B, 0x40};
+    private static final byte[] RASTER = {0x1D, 0x76, 0x30, 0x00};
+    private static final byte[] FEED_AND_CUT = {0x1B, 0x64, 0x03, 0x1D, 0x56, 0x42, 0x00};
+
+    @Param({"1", "3"})
+    public int pages;
+
+    private RenderedOrder rendered;
+    private byte[] ticket;
+    private Path fakePrinter;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] receipt = ReceiptPdfs.receipt(pages, 40);
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(receipt))) {
+            PDFRenderer renderer = new PDFRenderer(document);
+            List<BufferedImage> images = new ArrayList<>();
+            for (int i = 0; i < document.getNumberOfPages(); i++) {
+                images.add(renderer.renderImageWithDPI(i, DPI, ImageType.GRAY));
+            }
+            rendered = new RenderedOrder("order_20240502120000.pdf", DPI, images);
+        }
+        ticket = EscPosUtil.toEscPos(rendered, PRINTER_WIDTH);
+        checkTicket(ticket);
+        fakePrinter = Files.createTempFile("krp-escpos", ".bin");
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyFakePrinter() throws IOException {
+        // The targets are opened in append mode, without this every send would grow the same file
+        Files.write(fakePrinter, new byte[0]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkFakePrinter() throws IOException {
+        byte[] received = Files.readAllBytes(fakePrinter);
+        if (received.length > 0 && !Arrays.equals(received, ticket)) {
+            throw new IllegalStateException("The fake printer did not receive exactly one ticket");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(fakePrinter);
+    }
+
+    /**
+     * Walk the ticket command by command and fail if it is not the expected raster output.
+     */
+    private void checkTicket(byte[] data) {
+        int maxHeight = 0;
+        for (int i = 0; i < rendered.getPageCount(); i++) {
+            BufferedImage page = rendered.getPage(i);
+            maxHeight += (int) Math.round(page.getHeight() * (double) PRINTER_WIDTH / page.getWidth());
+        }
+
+        expect(data, 0, INITIALIZE, "ESC @");
+        int position = INITIALIZE.length;
+        int height = 0;
+        while (data.length - position > FEED_AND_CUT.length) {
+            expect(data, position, RASTER, "GS v 0");
+            int width = (data[position + 4] & 0xFF) | (data[position + 5] & 0xFF) << 8;
+            int bandHeight = (data[position + 6] & 0xFF) | (data[position + 7] & 0xFF) << 8;
+            if (width != BYTES_PER_ROW) {
+                throw new IllegalStateException("Raster width " + width + " bytes, expected " + BYTES_PER_ROW);
+            }
+            if (bandHeight <= 0) {
+                throw new IllegalStateException("Empty raster band at " + position);
+            }
+            height += bandHeight;
+            position += RASTER.length + 4 + width * bandHeight;
+        }
+        if (height <= 0 || height > maxHeight) {
+            throw new IllegalStateException("Raster height " + height + " dots, expected 1 to " + maxHeight);
+        }
+        if (data.length - position != FEED_AND_CUT.length) {
+            throw new IllegalStateException("Raster bands overrun the end of the ticket");
+        }
+        expect(data, position, FEED_AND_CUT, "feed and cut");
+    }
+
+    private static void expect(byte[] data, int position, byte[] command, String name) {
+        if (!Arrays.equals(data, position, position + command.length, command, 0, command.length)) {
+            throw new IllegalStateException("Expected " + name + " at " + position);
+        }
+    }
+
+    @Benchmark
+    public byte[] toEscPos() {
+        return EscPosUtil.toEscPos(rendered, PRINTER_WIDTH);
+    }
+
+    @Benchmark
+    public void sendToFile() throws IOException {
+        EscPosUtil.send("file:" + fakePrinter, ticket);
+    }
+}
@@ -0,0 +1,78 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless start of the application in a fresh JVM, with and without the AppCDS archive: the time
+ * for a new JVM to run TrainingRun, which opens the database, loads the FTP client and renders a
+ * first ticket, as the application does before printing its first order. The JavaFX window is not
+ * part of it, showing a Stage needs a display, so this measures the class loading and
+ * initialization the archive saves, not the time to the first window.
+ *
+ * Needs the shaded jar and the archive built by "mvn package -Pappcds"; their directory defaults to
+ * ../target and can be changed with -Dkrp.target=...
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeadlessStartupBenchmark {
+    private static final String JAR = "kitchenreceiptprint-1.0-SNAPSHOT-shaded.jar";
+    private static final String ARCHIVE = "kitchenreceiptprint.jsa";
+
+    @Param({"none", "appcds"})
+    public String archive;
+
+    private List<String> command;
+
+    @Setup
+    public void setup() {
+        Path target = Paths.get(System.getProperty("krp.target", "../target")).toAbsolutePath();
+        if (!Files.exists(target.resolve(JAR)) || !Files.exists(target.resolve(ARCHIVE))) {
+            throw new IllegalStateException("Build the application with -Pappcds first, nothing found in " + target);
+        }
+
+        command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if ("appcds".equals(archive)) {
+            command.add("-XX:SharedArchiveFile=" + target.resolve(ARCHIVE));
+        }
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(target.resolve(JAR).toString());
+        command.add("com.kitchenreceiptprint.TrainingRun");
+    }
+
+    @Benchmark
+    public int trainingRun() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Training run failed with exit code " + exitCode);
+        }
+        return exitCode;
+    }
+}
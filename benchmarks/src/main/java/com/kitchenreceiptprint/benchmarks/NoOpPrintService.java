@@ -0,0 +1,177 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import javax.print.Doc;
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
+import javax.print.PrintService;
+import javax.print.ServiceUIFactory;
+import javax.print.attribute.Attribute;
+import javax.print.attribute.AttributeSet;
+import javax.print.attribute.HashPrintJobAttributeSet;
+import javax.print.attribute.HashPrintServiceAttributeSet;
+import javax.print.attribute.PrintJobAttributeSet;
+import javax.print.attribute.PrintRequestAttributeSet;
+import javax.print.attribute.PrintServiceAttribute;
+import javax.print.attribute.PrintServiceAttributeSet;
+import javax.print.event.PrintJobAttributeListener;
+import javax.print.event.PrintJobListener;
+import javax.print.event.PrintServiceAttributeListener;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+
+/**
+ * Print service that renders every page of a job into an off-screen image and discards it, so the
+ * benchmarks pay the rendering cost of a real job without needing a printer or a spooler.
+ */
+final class NoOpPrintService implements PrintService {
+    private static final DocFlavor[] FLAVORS = {
+            DocFlavor.SERVICE_FORMATTED.PAGEABLE,
+            DocFlavor.SERVICE_FORMATTED.PRINTABLE
+    };
+
+    private final String name;
+
+    NoOpPrintService(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public DocPrintJob createPrintJob() {
+        return new DocPrintJob() {
+            @Override
+            public PrintService getPrintService() {
+                return NoOpPrintService.this;
+            }
+
+            @Override
+            public PrintJobAttributeSet getAttributes() {
+                return new HashPrintJobAttributeSet();
+            }
+
+            @Override
+            public void addPrintJobListener(PrintJobListener listener) {
+            }
+
+            @Override
+            public void removePrintJobListener(PrintJobListener listener) {
+            }
+
+            @Override
+            public void addPrintJobAttributeListener(PrintJobAttributeListener listener, PrintJobAttributeSet attributes) {
+            }
+
+            @Override
+            public void removePrintJobAttributeListener(PrintJobAttributeListener listener) {
+            }
+
+            @Override
+            public void print(Doc doc, PrintRequestAttributeSet attributes) throws PrintException {
+                try {
+                    Object data = doc.getPrintData();
+                    if (data instanceof Pageable) {
+                        Pageable pageable = (Pageable) data;
+                        for (int i = 0; i < pageable.getNumberOfPages(); i++) {
+                            render(pageable.getPrintable(i), pageable.getPageFormat(i), i);
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new PrintException(e);
+                }
+            }
+        };
+    }
+
+    private static void render(Printable printable, PageFormat format, int pageIndex) throws PrinterException {
+        BufferedImage image = new BufferedImage((int) format.getWidth(), (int) format.getHeight(),
+                BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            printable.print(graphics, format, pageIndex);
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    @Override
+    public void addPrintServiceAttributeListener(PrintServiceAttributeListener listener) {
+    }
+
+    @Override
+    public void removePrintServiceAttributeListener(PrintServiceAttributeListener listener) {
+    }
+
+    @Override
+    public PrintServiceAttributeSet getAttributes() {
+        return new HashPrintServiceAttributeSet();
+    }
+
+    @Override
+    public <T extends PrintServiceAttribute> T getAttribute(Class<T> category) {
+        return null;
+    }
+
+    @Override
+    public DocFlavor[] getSupportedDocFlavors() {
+        return FLAVORS.clone();
+    }
+
+    @Override
+    public boolean isDocFlavorSupported(DocFlavor flavor) {
+        for (DocFlavor supported : FLAVORS) {
+            if (supported.equals(flavor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Class<?>[] getSupportedAttributeCategories() {
+        return new Class<?>[0];
+    }
+
+    @Override
+    public boolean isAttributeCategorySupported(Class<? extends Attribute> category) {
+        return false;
+    }
+
+    @Override
+    public Object getDefaultAttributeValue(Class<? extends Attribute> category) {
+        return null;
+    }
+
+    @Override
+    public Object getSupportedAttributeValues(Class<? extends Attribute> category, DocFlavor flavor, AttributeSet attributes) {
+        return null;
+    }
+
+    @Override
+    public boolean isAttributeValueSupported(Attribute attrval, DocFlavor flavor, AttributeSet attributes) {
+        return false;
+    }
+
+    @Override
+    public AttributeSet getUnsupportedAttributes(DocFlavor flavor, AttributeSet attributes) {
+        return null;
+    }
+
+    @Override
+    public ServiceUIFactory getServiceUIFactory() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,46 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import javax.print.DocFlavor;
+import javax.print.MultiDocPrintService;
+import javax.print.PrintService;
+import javax.print.PrintServiceLookup;
+import javax.print.attribute.AttributeSet;
+
+/**
+ * Makes the no-op printers visible to PrintServiceLookup, and therefore to the printer registry
+ * of the application.
+ */
+final class NoOpPrintServiceLookup extends PrintServiceLookup {
+    private final PrintService[] services;
+
+    private NoOpPrintServiceLookup(String... names) {
+        services = new PrintService[names.length];
+        for (int i = 0; i < names.length; i++) {
+            services[i] = new NoOpPrintService(names[i]);
+        }
+    }
+
+    static void register(String... names) {
+        PrintServiceLookup.registerServiceProvider(new NoOpPrintServiceLookup(names));
+    }
+
+    @Override
+    public PrintService[] getPrintServices(DocFlavor flavor, AttributeSet attributes) {
+        return services.clone();
+    }
+
+    @Override
+    public PrintService[] getPrintServices() {
+        return services.clone();
+    }
+
+    @Override
+    public MultiDocPrintService[] getMultiDocPrintServices(DocFlavor[] flavors, AttributeSet attributes) {
+        return new MultiDocPrintService[0];
+    }
+
+    @Override
+    public PrintService getDefaultPrintService() {
+        return services.length > 0 ? services[0] : null;
+    }
+}
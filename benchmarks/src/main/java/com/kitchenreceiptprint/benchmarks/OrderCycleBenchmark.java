@@ -0,0 +1,167 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import com.kitchenreceiptprint.controller.FtpDownloaderController;
+import com.kitchenreceiptprint.controller.FtpSessionController;
+import com.kitchenreceiptprint.controller.OrderPipelineController;
+import com.kitchenreceiptprint.controller.PdfPrinterController;
+import com.kitchenreceiptprint.controller.ProcessPdfFilesController;
+import com.kitchenreceiptprint.model.DatabaseModel;
+import com.kitchenreceiptprint.model.OrderSource;
+import com.kitchenreceiptprint.util.MessageUtil;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Full ingest-to-print cycle: discovery, download, print and delete of a batch of orders,
+ * against an embedded FTP server and no-op printers.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djava.awt.headless=true",
+        // In memory so that the order journal of a previous run does not skip the printing
+        "-Dkitchenreceiptprint.db=jdbc:h2:mem:krp-bench-cycle;DB_CLOSE_DELAY=-1"
+})
+@State(Scope.Benchmark)
+public class OrderCycleBenchmark {
+    private static final String[] PRINTERS = {"bench-hot", "bench-cold", "bench-bar"};
+    private static final long CYCLE_TIMEOUT_SECONDS = 60;
+    private static final LocalDateTime FIRST_ORDER = LocalDateTime.of(2024, 5, 2, 0, 0);
+    private static final DateTimeFormatter ORDER_TIMESTAMP = DateTimeFormatter.ofPattern("uuuuMMddHHmmss");
+
+    @Param({"1", "10"})
+    public int orders;
+
+    private Path ftpRoot;
+    private FtpServer ftpServer;
+    private byte[] receipt;
+    private FtpSessionController discoverySession;
+    private FtpDownloaderController downloader;
+    private PdfPrinterController printer;
+    private OrderPipelineController pipeline;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        NoOpPrintServiceLookup.register(PRINTERS);
+
+        DatabaseModel.createDatabase();
+        DatabaseModel.getInstance().saveConfiguration(Map.of(), List.of(PRINTERS));
+
+        ftpRoot = Files.createTempDirectory("krp-ftp");
+        int port = startFtpServer(ftpRoot);
+        String server = "localhost:" + port;
+
+        receipt = ReceiptPdfs.receipt(1, 40);
+
+        MessageUtil messages = OrderListingBenchmark.Silent.MESSAGES;
+        discoverySession = new FtpSessionController(server, "krp", "krp", messages);
+        downloader = new FtpDownloaderController(messages, discoverySession);
+        printer = new PdfPrinterController(messages);
+        OrderSource source = new OrderSource(OrderSource.DEFAULT_NAME, OrderSource.Type.FTP, server, "krp", "krp",
+                OrderSource.DEFAULT_DIRECTORY, OrderSource.DEFAULT_PREFIX, 0, 0, true);
+        pipeline = new OrderPipelineController(messages,
+                source,
+                () -> new FtpSessionController(server, "krp", "krp", messages),
+                printer,
+                null, null, 2, 1, 1, 10);
+        pipeline.start();
+    }
+
+    @Setup(Level.Invocation)
+    public void uploadOrders() throws IOException {
+        for (int i = 0; i < orders; i++) {
+            sequence++;
+            String name = "order_" + FIRST_ORDER.plusSeconds(sequence).format(ORDER_TIMESTAMP) + ".pdf";
+            Files.write(ftpRoot.resolve(name), receipt);
+        }
+    }
+
+    @Benchmark
+    public void cycle() throws Exception {
+        ProcessPdfFilesController.processPdfFiles(downloader, OrderListingBenchmark.Silent.MESSAGES, pipeline);
+        // The pipeline deletes each order from the server once it has been printed everywhere
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CYCLE_TIMEOUT_SECONDS);
+        while (pendingOrders() > 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Orders still on the server after " + CYCLE_TIMEOUT_SECONDS + " s");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pipeline.shutdown();
+        printer.shutdown();
+        discoverySession.close();
+        ftpServer.stop();
+        DatabaseModel.getInstance().closeConnection();
+        try (Stream<Path> paths = Files.walk(ftpRoot)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private long pendingOrders() throws IOException {
+        try (Stream<Path> paths = Files.list(ftpRoot)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith("order_")).count();
+        }
+    }
+
+    private int startFtpServer(Path root) throws Exception {
+        PropertiesUserManagerFactory userManagerFactory = new PropertiesUserManagerFactory();
+        userManagerFactory.setFile(Files.createTempFile("krp-ftp-users", ".properties").toFile());
+        UserManager userManager = userManagerFactory.createUserManager();
+
+        BaseUser user = new BaseUser();
+        user.setName("krp");
+        user.setPassword("krp");
+        user.setHomeDirectory(root.toString());
+        user.setAuthorities(List.<Authority>of(new WritePermission()));
+        userManager.save(user);
+
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setPort(0);
+
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        serverFactory.setUserManager(userManager);
+        serverFactory.addListener("default", listenerFactory.createListener());
+
+        ftpServer = serverFactory.createServer();
+        ftpServer.start();
+        return serverFactory.getListener("default").getPort();
+    }
+}
@@ -0,0 +1,74 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import com.kitchenreceiptprint.controller.FtpDownloaderController;
+import com.kitchenreceiptprint.model.OrderRef;
+import com.kitchenreceiptprint.util.MessageUtil;
+import org.apache.commons.net.ftp.FTPFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering and sorting of an FTP listing, as done by FtpDownloaderController on every poll.
+ * The listing mixes order files with unrelated files, like a directory full of stale files would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderListingBenchmark {
+    @Param({"10", "1000", "10000", "100000"})
+    public int files;
+
+    private FTPFile[] listing;
+    private FtpDownloaderController downloader;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        listing = new FTPFile[files];
+        for (int i = 0; i < files; i++) {
+            FTPFile file = new FTPFile();
+            if (i % 10 == 0) {
+                file.setName("invoice_" + i + ".pdf");
+            } else {
+                file.setName(String.format("order_2024%02d%02d%02d%02d%02d.pdf",
+                        1 + random.nextInt(12), 1 + random.nextInt(28),
+                        random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+            }
+            file.setSize(20_000 + random.nextInt(20_000));
+            listing[i] = file;
+        }
+        downloader = new FtpDownloaderController(Silent.MESSAGES, null);
+    }
+
+    @Benchmark
+    public List<OrderRef> selectOrders() {
+        return downloader.selectOrders(listing, "order");
+    }
+
+    static final class Silent {
+        static final MessageUtil MESSAGES = new MessageUtil() {
+            @Override
+            public void appendMessage(String message) {
+            }
+        };
+
+        private Silent() {
+        }
+    }
+}
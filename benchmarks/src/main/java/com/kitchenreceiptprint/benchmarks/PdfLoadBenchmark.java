@@ -0,0 +1,72 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.printing.PDFPageable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.PrinterException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of a kitchen ticket with PDFBox and preparation of its pages for a printer job.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class PdfLoadBenchmark {
+    @Param({"1", "3"})
+    public int pages;
+
+    private byte[] receipt;
+
+    @Setup
+    public void setup() throws IOException {
+        receipt = ReceiptPdfs.receipt(pages, 40);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(receipt))) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    @Benchmark
+    public int loadAndPreparePages() throws IOException, PrinterException {
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(receipt))) {
+            PDFPageable pageable = new PDFPageable(document);
+            int rendered = 0;
+            for (int i = 0; i < pageable.getNumberOfPages(); i++) {
+                PageFormat format = pageable.getPageFormat(i);
+                BufferedImage image = new BufferedImage((int) format.getWidth(), (int) format.getHeight(),
+                        BufferedImage.TYPE_BYTE_GRAY);
+                Graphics2D graphics = image.createGraphics();
+                try {
+                    rendered += pageable.getPrintable(i).print(graphics, format, i);
+                } finally {
+                    graphics.dispose();
+                }
+            }
+            return rendered;
+        }
+    }
+}
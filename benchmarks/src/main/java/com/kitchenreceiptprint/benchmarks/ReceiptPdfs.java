@@ -0,0 +1,52 @@
+package com.kitchenreceiptprint.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Builds kitchen tickets similar to the ones sent by the ordering systems: an 80 mm wide page
+ * with a header and one line per ordered item.
+ */
+final class ReceiptPdfs {
+    // 80 mm receipt paper, in PDF points
+    private static final float WIDTH = 80 / 25.4f * 72;
+    private static final float HEIGHT = 600;
+
+    private ReceiptPdfs() {
+    }
+
+    static byte[] receipt(int pages, int linesPerPage) throws IOException {
+        try (PDDocument document = new PDDocument();
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PDType1Font regular = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+
+            for (int page = 0; page < pages; page++) {
+                PDPage pdPage = new PDPage(new PDRectangle(WIDTH, HEIGHT));
+                document.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdPage)) {
+                    content.beginText();
+                    content.setFont(bold, 14);
+                    content.newLineAtOffset(10, HEIGHT - 30);
+                    content.showText("COMMANDE 20240502143015");
+                    content.setFont(regular, 10);
+                    content.setLeading(13);
+                    for (int line = 0; line < linesPerPage; line++) {
+                        content.newLine();
+                        content.showText((line % 3 + 1) + " x Plat du jour n" + line + "  -  sans oignons");
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
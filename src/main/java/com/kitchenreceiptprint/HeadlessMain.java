@@ -0,0 +1,87 @@
+package com.kitchenreceiptprint;
+
+import com.kitchenreceiptprint.controller.OrderProcessingController;
+import com.kitchenreceiptprint.controller.PdfPrinterController;
+import com.kitchenreceiptprint.model.ConfigurationSnapshot;
+import com.kitchenreceiptprint.model.DatabaseModel;
+import com.kitchenreceiptprint.util.MessageUtil;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class HeadlessMain
+ *
+ * Entry point running the processing of orders without any window. The configuration saved from
+ * the main application is read from the database and the periodic discovery and the order
+ * pipeline are started right away, so the tickets keep printing after a reboot without anybody
+ * clicking the start button.
+ *
+ * Responsibilities:
+ * - Open the database and read the configuration snapshot.
+ * - Start the processing of orders through OrderProcessingController.
+ * - Copy the event log to the standard output, in addition to the rolling log file.
+ * - Stop the processing and close the database when the JVM shuts down.
+ *
+ * Usage:
+ * java -cp kitchenreceiptprint-1.0-SNAPSHOT-shaded.jar com.kitchenreceiptprint.HeadlessMain
+ * It can be registered as a Windows service or a scheduled task run at startup.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - No JavaFX class is referenced from this entry point, so the JavaFX runtime is never loaded.
+ * - java.awt.headless is set before any AWT class is loaded, printing works without a display.
+ * - The configuration is edited with the main application, the headless mode never modifies it.
+ */
+public class HeadlessMain {
+    private static final long CONSOLE_FLUSH_MILLIS = 250;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        MessageUtil message = new MessageUtil();
+        startConsoleLog(message);
+
+        DatabaseModel.createDatabase();
+        ConfigurationSnapshot config = DatabaseModel.getInstance().getSnapshot();
+
+        OrderProcessingController processing = new OrderProcessingController(message);
+        if (!processing.start(config)) {
+            System.err.println("Configuration FTP incomplète, lancez l'application pour la renseigner");
+            DatabaseModel.getInstance().closeConnection();
+            System.exit(1);
+        }
+
+        // The first ticket would otherwise pay for the printer lookup and the PDF font setup
+        Thread warmUp = new Thread(PdfPrinterController::warmUp, "warm-up");
+        warmUp.setDaemon(true);
+        warmUp.start();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            processing.stop();
+            DatabaseModel.getInstance().closeConnection();
+            stopped.countDown();
+        }, "shutdown"));
+        stopped.await();
+    }
+
+    private static void startConsoleLog(MessageUtil message) {
+        MessageUtil.Reader reader = message.newReader();
+        Thread console = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                reader.drain(System.out::println, Integer.MAX_VALUE);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(CONSOLE_FLUSH_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "console-log");
+        console.setDaemon(true);
+        console.start();
+    }
+}
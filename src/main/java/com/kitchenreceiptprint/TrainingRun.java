@@ -0,0 +1,90 @@
+package com.kitchenreceiptprint;
+
+import com.kitchenreceiptprint.controller.PdfPrinterController;
+import com.kitchenreceiptprint.model.DatabaseModel;
+import com.kitchenreceiptprint.model.OrderState;
+import com.kitchenreceiptprint.util.LocalizationUtil;
+import com.kitchenreceiptprint.util.MetricsUtil;
+import com.kitchenreceiptprint.view.MainLayoutView;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import org.apache.commons.net.ftp.FTPClient;
+
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class TrainingRun
+ *
+ * Short run of the application used to build the AppCDS archive shipped with the package. It goes
+ * through the startup path of every subsystem (database, FTP client, PDF rendering, print
+ * services and, when a display is available, the main window) and exits, so that the classes they
+ * load are recorded in the archive given by -XX:ArchiveClassesAtExit.
+ *
+ * Responsibilities:
+ * - Open a scratch in-memory database and run the startup queries and the journal statements.
+ * - Load the FTP client and the metrics classes.
+ * - Warm up the print services and render a ticket with PDFBox.
+ * - Open and close the main window when the environment has a display.
+ *
+ * Usage:
+ * Run by the "appcds" Maven profile after the shaded jar is built:
+ * java -XX:ArchiveClassesAtExit=target/kitchenreceiptprint.jsa -cp target/...-shaded.jar com.kitchenreceiptprint.TrainingRun
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - The user database is never opened, kitchenreceiptprint.db defaults to an in-memory database here.
+ * - Without a display the JavaFX classes are not recorded; the archive still speeds up the rest.
+ */
+public class TrainingRun {
+    private static final long WINDOW_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (System.getProperty("kitchenreceiptprint.db") == null) {
+            System.setProperty("kitchenreceiptprint.db", "jdbc:h2:mem:training;DB_CLOSE_DELAY=-1");
+        }
+
+        DatabaseModel.createDatabase();
+        DatabaseModel model = DatabaseModel.getInstance();
+        model.getSnapshot();
+        model.journalOrder("order_20240101000000.pdf", OrderState.DISCOVERED);
+        model.getJournalState("order_20240101000000.pdf");
+        model.getPrintedPrinters("order_20240101000000.pdf");
+
+        new FTPClient();
+        MetricsUtil.record(MetricsUtil.PDF_RENDER, MetricsUtil.start(), true);
+        PdfPrinterController.warmUp();
+
+        if (!GraphicsEnvironment.isHeadless()) {
+            openMainWindow();
+        }
+
+        model.closeConnection();
+        System.exit(0);
+    }
+
+    private static void openMainWindow() throws InterruptedException {
+        CountDownLatch shown = new CountDownLatch(1);
+        try {
+            Platform.startup(() -> {
+                try {
+                    LocalizationUtil.initialize("fr");
+                    Stage stage = new Stage();
+                    new MainLayoutView(stage);
+                    stage.close();
+                } finally {
+                    shown.countDown();
+                }
+            });
+            shown.await(WINDOW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Platform.exit();
+        } catch (RuntimeException e) {
+            // No usable display, the JavaFX classes are left out of the archive
+            System.err.println("Fenêtre principale ignorée : " + e.getMessage());
+        }
+    }
+}
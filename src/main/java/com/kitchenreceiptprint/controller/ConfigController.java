@@ -1,6 +1,8 @@
 package com.kitchenreceiptprint.controller;
 
+import com.kitchenreceiptprint.model.ConfigurationSnapshot;
 import com.kitchenreceiptprint.model.DatabaseModel;
+import com.kitchenreceiptprint.model.OrderSource;
 import com.kitchenreceiptprint.util.CryptoUtil;
 import com.kitchenreceiptprint.util.ExceptionUtil;
 import javafx.collections.ObservableList;
@@ -8,7 +10,9 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -17,13 +21,14 @@ import java.util.Set;
  * Manages the configuration settings of the Kitchen Receipt Printing application. This controller
  * is responsible for initializing the configuration view with current settings from the database,
  * allowing the user to update these settings, and saving the changes back to the database. It covers
- * settings such as FTP server details, polling interval, and printer selections.
+ * settings such as FTP server details, polling intervals, and printer selections.
  *
  * Responsibilities:
  * - Load and display current configuration settings from the database on the UI.
  * - Capture user updates to configuration settings such as FTP server info, credentials, polling interval,
- *   and selected printers.
+ *   selected printers and the printers driven in raw ESC/POS mode.
  * - Save updated configuration settings back to the database and apply changes.
+ * - Keep the default source of orders in line with the FTP server entered on this screen.
  *
  * Usage:
  * This class is linked to an FXML file defining the configuration view layout and is instantiated
@@ -39,6 +44,9 @@ import java.util.Set;
  * - Incorporates exception handling to manage any issues during the configuration process.
  */
 public class ConfigController {
+    // Optional settings, an empty field turns them off instead of keeping the previous value
+    private static final Set<String> CLEARABLE = Set.of("interval_min", "escpos_printers", "escpos_targets");
+
     @FXML
     private ChoiceBox<String> languageChoiceBox;
 
@@ -54,9 +62,18 @@ public class ConfigController {
     @FXML
     private TextField intervalField;
 
+    @FXML
+    private TextField intervalMinField;
+
     @FXML
     private ListView<String> printerList;
 
+    @FXML
+    private ListView<String> escPosPrinterList;
+
+    @FXML
+    private TextField escPosTargetsField;
+
     @FXML
     private Button save;
 
@@ -75,6 +92,7 @@ public class ConfigController {
             usernameField.setText(model.getConfiguration("ftp_username") != null ? model.getConfiguration("ftp_username") : "");
             passwordField.setText(model.getConfiguration("ftp_password") != null ? CryptoUtil.decrypt(model.getConfiguration("ftp_password")) : "");
             intervalField.setText(model.getConfiguration("interval") != null ? model.getConfiguration("interval") : "");
+            intervalMinField.setText(model.getConfiguration("interval_min") != null ? model.getConfiguration("interval_min") : "");
 
             printerList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
             printerList.setItems(PrintController.getPrinters());
@@ -87,6 +105,17 @@ public class ConfigController {
                     printerList.getSelectionModel().select(printer);
                 }
             }
+
+            ConfigurationSnapshot config = model.getSnapshot();
+            escPosPrinterList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+            escPosPrinterList.setItems(PrintController.getPrinters());
+            Set<String> escPosPrinters = new HashSet<>(config.getList("escpos_printers"));
+            for (String printer : escPosPrinterList.getItems()) {
+                if (escPosPrinters.contains(printer)) {
+                    escPosPrinterList.getSelectionModel().select(printer);
+                }
+            }
+            escPosTargetsField.setText(String.join(", ", config.getList("escpos_targets")));
         } catch (Exception e) {
             ExceptionUtil.handleException(e);
         }
@@ -95,20 +124,21 @@ public class ConfigController {
     @FXML
     private void saveConfiguration() {
         try {
-            //model.addConfiguration("language", languageChoiceBox.getValue());
-            model.addConfiguration("ftp_server", serverField.getText());
-            model.addConfiguration("ftp_username", usernameField.getText());
-            model.addConfiguration("ftp_password", CryptoUtil.encrypt(passwordField.getText()));
-            model.addConfiguration("interval", intervalField.getText());
+            Map<String, String> values = new LinkedHashMap<>();
+            //values.put("language", languageChoiceBox.getValue());
+            values.put("ftp_server", serverField.getText());
+            values.put("ftp_username", usernameField.getText());
+            values.put("ftp_password", CryptoUtil.encrypt(passwordField.getText()));
+            values.put("interval", intervalField.getText());
+            values.put("interval_min", intervalMinField.getText().trim());
+            values.put("escpos_printers", String.join(",", escPosPrinterList.getSelectionModel().getSelectedItems()));
+            values.put("escpos_targets", escPosTargetsField.getText().trim());
 
             ObservableList<String> selectedPrinters = printerList.getSelectionModel().getSelectedItems();
 
-            if (selectedPrinters != null &&!selectedPrinters.isEmpty()) {
-                model.delPrinters();
-                model.addPrinters(selectedPrinters);
-            } else {
-                model.delPrinters();
-            }
+            // Settings and printers are written in a single transaction
+            model.saveConfiguration(values, CLEARABLE, selectedPrinters);
+            saveDefaultSource(values);
 
             if (PeriodicTaskRunnerController.isTaskRunning()) {
                 PeriodicTaskRunnerController.killTask();
@@ -121,4 +151,30 @@ public class ConfigController {
             ExceptionUtil.handleException(e);
         }
     }
+
+    /**
+     * The FTP server of this screen is the default source, its directory, prefix and intervals are kept.
+     */
+    private void saveDefaultSource(Map<String, String> values) {
+        String server = values.get("ftp_server");
+        String username = values.get("ftp_username");
+        String password = values.get("ftp_password");
+        if (server == null || server.isEmpty() || username == null || username.isEmpty()
+                || password == null || password.isEmpty()) {
+            return;
+        }
+
+        OrderSource current = null;
+        for (OrderSource source : model.getSnapshot().getSources()) {
+            if (source.isDefault()) {
+                current = source;
+            }
+        }
+        model.saveSource(new OrderSource(OrderSource.DEFAULT_NAME, OrderSource.Type.FTP, server, username, password,
+                current != null ? current.getDirectory() : OrderSource.DEFAULT_DIRECTORY,
+                current != null ? current.getPrefix() : OrderSource.DEFAULT_PREFIX,
+                current != null ? current.getMinInterval() : 0,
+                current != null ? current.getMaxInterval() : 0,
+                current == null || current.isEnabled()));
+    }
 }
@@ -0,0 +1,217 @@
+package com.kitchenreceiptprint.controller;
+
+import com.kitchenreceiptprint.model.OrderRef;
+import com.kitchenreceiptprint.model.OrderSource;
+import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MessageUtil;
+import com.kitchenreceiptprint.util.PdfUtil;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Class FolderWatcherController
+ *
+ * Discovery step of a source of type FOLDER: the orders are dropped in a local folder or a mounted
+ * share instead of an FTP server. The folder is watched with a WatchService, so an order is handed
+ * to the OrderPipelineController as soon as it is completely written, without waiting for the next
+ * polling tick.
+ *
+ * Responsibilities:
+ * - Watch the folder of the source for created and modified files matching its prefix.
+ * - Decide when a file is completely written: a PDF ending with its %%EOF trailer is ready at once,
+ *   which covers the files renamed into place, any other file once its size has not changed for
+ *   folder_stable_millis.
+ * - Submit the ready orders to the pipeline, most urgent first when several are ready together.
+ * - Scan the whole folder on start, after the event queue overflowed and on every call to scan.
+ *
+ * Usage:
+ * Created by OrderProcessingController with the pipeline of the source and started. The periodic
+ * task of the source calls scan as a safety net, e.g. for network shares that do not report events.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - The watcher runs on its own daemon thread and checks the files waiting for completion every
+ *   CHECK_MILLIS, so the latency of a rename into place is a few milliseconds.
+ * - A file submitted again while it is processed is ignored by the pipeline, which keeps track of
+ *   the orders in flight and of the orders already printed.
+ */
+public class FolderWatcherController implements AutoCloseable {
+    private static final long CHECK_MILLIS = 50;
+
+    private final MessageUtil messageUtil;
+    private final OrderSource source;
+    private final OrderPipelineController pipeline;
+    private final Path folder;
+    private final long stableMillis;
+
+    // Files waiting to be completely written, by name
+    private final Map<String, Candidate> candidates = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+    private Thread watcher;
+
+    private static final class Candidate {
+        private final long size;
+        private final long since;
+
+        private Candidate(long size, long since) {
+            this.size = size;
+            this.since = since;
+        }
+    }
+
+    public FolderWatcherController(MessageUtil messageUtil, OrderSource source, OrderPipelineController pipeline,
+                                   long stableMillis) {
+        this.messageUtil = messageUtil;
+        this.source = source;
+        this.pipeline = pipeline;
+        this.folder = Paths.get(source.getDirectory());
+        this.stableMillis = stableMillis;
+    }
+
+    public synchronized void start() throws IOException {
+        watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        watcher = new Thread(this::watchLoop, "watch-" + source.getName());
+        watcher.setDaemon(true);
+        watcher.start();
+        messageUtil.appendMessage("Surveillance du dossier : " + folder);
+    }
+
+    /**
+     * List the whole folder and submit the orders that are ready.
+     *
+     * @return true if at least one order was submitted.
+     */
+    public boolean scan() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, source.getPrefix() + "_*.pdf")) {
+            for (Path file : files) {
+                candidates.putIfAbsent(file.getFileName().toString(), new Candidate(-1, System.nanoTime()));
+            }
+        } catch (IOException e) {
+            messageUtil.appendMessage("Dossier inaccessible : " + folder);
+            ExceptionUtil.handleException(e);
+            return false;
+        }
+        return submitReady();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                ExceptionUtil.handleException(e);
+            }
+            watchService = null;
+        }
+        candidates.clear();
+    }
+
+    private void watchLoop() {
+        WatchService service = watchService;
+        scan();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.poll(CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            // Some events were lost, the folder is listed again
+                            scan();
+                            continue;
+                        }
+                        String fileName = event.context().toString();
+                        if (fileName.startsWith(source.getPrefix() + "_") && fileName.endsWith(".pdf")) {
+                            candidates.putIfAbsent(fileName, new Candidate(-1, System.nanoTime()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        messageUtil.appendMessage("Dossier inaccessible : " + folder);
+                        return;
+                    }
+                }
+                if (!candidates.isEmpty()) {
+                    submitReady();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submit the candidates that are completely written, most urgent first.
+     */
+    private synchronized boolean submitReady() {
+        List<OrderRef> ready = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
+            String fileName = entry.getKey();
+            Path file = folder.resolve(fileName);
+            try {
+                long size = Files.size(file);
+                Candidate previous = entry.getValue();
+                boolean stable = size == previous.size
+                        && TimeUnit.NANOSECONDS.toMillis(now - previous.since) >= stableMillis;
+                if (size > 0 && (stable || PdfUtil.endsWithTrailer(file, size))) {
+                    candidates.remove(fileName);
+                    OrderRef order = FtpDownloaderController.parseOrder(fileName, size, source.getPrefix());
+                    if (order != null) {
+                        ready.add(order);
+                    }
+                } else if (size != previous.size) {
+                    entry.setValue(new Candidate(size, now));
+                }
+            } catch (NoSuchFileException e) {
+                candidates.remove(fileName);
+            } catch (DateTimeParseException e) {
+                candidates.remove(fileName);
+                messageUtil.appendMessage("Erreur lors de l'analyse de la date du fichier" + e);
+            } catch (IOException e) {
+                // Locked by the writer on some systems, checked again on the next pass
+            }
+        }
+        if (ready.isEmpty()) {
+            return false;
+        }
+
+        ready.sort(pipeline.getSubmissionOrder());
+        boolean submitted = false;
+        try {
+            for (OrderRef order : ready) {
+                submitted |= pipeline.submit(order);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return submitted;
+    }
+}
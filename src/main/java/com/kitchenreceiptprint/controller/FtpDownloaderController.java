@@ -1,21 +1,36 @@
 package com.kitchenreceiptprint.controller;
 
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.UnknownHostException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import com.kitchenreceiptprint.model.OrderRef;
 import com.kitchenreceiptprint.util.ExceptionUtil;
 import com.kitchenreceiptprint.util.MessageUtil;
+import com.kitchenreceiptprint.util.MetricsUtil;
+import com.kitchenreceiptprint.util.PdfUtil;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
-import org.apache.commons.net.ftp.FTPReply;
 
 /**
  * Class FtpDownloaderController
@@ -27,9 +42,13 @@ import org.apache.commons.net.ftp.FTPReply;
  * processing.
  *
  * Responsibilities:
- * - Connect to an FTP server using provided credentials.
+ * - Run every FTP command of a poll cycle over the shared FtpSessionController connection.
  * - List all PDF files on the server that match a specified naming pattern.
- * - Download selected PDF files to a local directory for further processing.
+ * - Download selected PDF files to a local directory, or directly into memory, for further processing.
+ * - Leave the files still being uploaded for the next poll: their size differs from the listing,
+ *   or their PDF trailer is missing and the server modified them in the last seconds.
+ * - Resume interrupted transfers from the bytes already received (REST), into a .part file renamed
+ *   once complete in the local directory mode.
  * - Delete PDF files from the server after successful download and processing.
  *
  * Usage:
@@ -47,42 +66,43 @@ import org.apache.commons.net.ftp.FTPReply;
  * - Error handling is implemented to manage connectivity issues, file access errors, and FTP command failures.
  */
 public class FtpDownloaderController {
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+    // Short transfers are resumed that many times before giving up until the next poll, the
+    // interrupted ones are already retried by the session
+    private static final int TRANSFER_ATTEMPTS = 3;
+    // A PDF without its trailer is only accepted once the server has not modified it for that long
+    private static final long UPLOAD_STABLE_SECONDS = 10;
+    private static final String PART_SUFFIX = ".part";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("uuuuMMddHHmmss")
+            .withResolverStyle(ResolverStyle.STRICT);
+    // Compiled order name patterns, by prefix
+    private static final Map<String, Pattern> ORDER_PATTERNS = new ConcurrentHashMap<>();
+
     private final MessageUtil messageUtil;
+    private final FtpSessionController session;
 
-    public FtpDownloaderController(MessageUtil messageUtil) {
-        this.messageUtil = messageUtil;
+    private enum Transfer {
+        COMPLETE,
+        // The file is still being uploaded to the server, it is left for the next poll
+        UPLOADING,
+        FAILED
     }
 
-    public List<String> getLatestPdfListFromFtp(String remoteDir, String prefix, String server,
-                                                String username, String password) throws IOException {
+    public FtpDownloaderController(MessageUtil messageUtil, FtpSessionController session) {
+        this.messageUtil = messageUtil;
+        this.session = session;
+    }
 
-        FTPClient ftpClient = new FTPClient();
+    public List<OrderRef> getLatestPdfListFromFtp(String remoteDir, String prefix) throws IOException {
+        long start = MetricsUtil.start();
+        boolean listed = false;
         try {
-            ftpClient.connect(server);
-            ftpClient.login(username, password);
-
-            int replyCode = ftpClient.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(replyCode)) {
-                messageUtil.appendMessage("Échec de la connexion au serveur FTP, code de réponse: " + replyCode);
-            }
-
-            FTPFile[] files = ftpClient.listFiles(remoteDir);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
-
-            return Arrays.stream(files)
-                    .filter(file -> file.getName().matches(prefix + "_\\d{14}\\.pdf"))
-                    .sorted(Comparator.comparing(ftpFile -> {
-                        try {
-                            String dateTimeStr = ftpFile.getName()
-                                    .replaceAll(".*" + prefix + "_(\\d{14})\\.pdf.*", "$1");
-                            return dateFormat.parse(dateTimeStr);
-                        } catch (ParseException e) {
-                            messageUtil.appendMessage("Erreur lors de l'analyse de la date du fichier" + e);
-                        }
-                        return null;
-                    }))
-                    .map(FTPFile::getName)
-                    .collect(Collectors.toList());
+            FTPFile[] files = session.execute(ftpClient -> ftpClient.listFiles(remoteDir));
+            listed = true;
+            return selectOrders(files, prefix);
+        } catch (FtpSessionController.UnavailableException e) {
+            // The circuit breaker is open, it already reported the outage
+            return null;
         } catch (UnknownHostException e) {
             // Gérer spécifiquement l'UnknownHostException
             messageUtil.appendMessage("Serveur FTP  introuvable : " + e.getMessage());
@@ -93,85 +113,253 @@ public class FtpDownloaderController {
             // Gestion des autres exceptions
             ExceptionUtil.handleException(e);
         } finally {
-            if (ftpClient.isConnected()) {
-                ftpClient.logout();
-                ftpClient.disconnect();
-            }
+            MetricsUtil.record(MetricsUtil.FTP_LIST, start, listed);
         }
         return null;
     }
 
-    public void downloadPdfFile(String server, String username, String password,
-                                String remoteDir, String fileName, String localDir) {
-        FTPClient ftpClient = new FTPClient();
-        try {
-            ftpClient.connect(server);
-            ftpClient.login(username, password);
+    /**
+     * Keep the files named prefix_yyyyMMddHHmmss[_tag].pdf and sort them oldest first.
+     * The timestamp of each file is parsed only once, files with an invalid date are skipped.
+     *
+     * @return List<OrderRef>.
+     */
+    public List<OrderRef> selectOrders(FTPFile[] files, String prefix) {
+        List<OrderRef> orders = new ArrayList<>();
 
-            int replyCode = ftpClient.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(replyCode)) {
-                messageUtil.appendMessage("Échec de la connexion au serveur FTP, code de réponse: " + replyCode);
-                return;
+        for (FTPFile file : files) {
+            if (file == null) {
+                continue;
+            }
+            try {
+                OrderRef order = parseOrder(file.getName(), file.getSize(), prefix);
+                if (order != null) {
+                    orders.add(order);
+                }
+            } catch (DateTimeParseException e) {
+                messageUtil.appendMessage("Erreur lors de l'analyse de la date du fichier" + e);
             }
+        }
+
+        orders.sort(OrderRef.OLDEST_FIRST);
+        return orders;
+    }
 
-            ftpClient.enterLocalPassiveMode();
-            ftpClient.setFileType(FTPClient.BINARY_FILE_TYPE);
+    /**
+     * Parse the name of an order file, prefix_yyyyMMddHHmmss.pdf or prefix_yyyyMMddHHmmss_tag.pdf.
+     *
+     * @return the order, or null if the name does not match.
+     * @throws DateTimeParseException if the timestamp is not a valid date.
+     */
+    public static OrderRef parseOrder(String fileName, long size, String prefix) {
+        Pattern pattern = ORDER_PATTERNS.computeIfAbsent(prefix,
+                key -> Pattern.compile(Pattern.quote(key) + "_(\\d{14})(?:_([A-Za-z0-9-]+))?\\.pdf"));
+        Matcher matcher = pattern.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        long sortKey = LocalDateTime.parse(matcher.group(1), TIMESTAMP_FORMAT).toEpochSecond(ZoneOffset.UTC);
+        return new OrderRef(fileName, sortKey, size, matcher.group(2));
+    }
+
+    public boolean downloadPdfFile(String remoteDir, String fileName, String localDir) {
+        return downloadPdfFile(remoteDir, fileName, localDir, -1);
+    }
 
-            String remoteFilePath = remoteDir + "/" + fileName;
-            try (OutputStream outputStream = new FileOutputStream(localDir + "/" + fileName)) {
-                boolean success = ftpClient.retrieveFile(remoteFilePath, outputStream);
-                if (success) {
-                    messageUtil.appendMessage("Téléchargement réussi de : " + fileName);
-                } else {
-                    messageUtil.appendMessage("Échec du téléchargement de : " + fileName);
+    /**
+     * Download a PDF file to a local directory. The file is written to fileName.part and renamed
+     * once complete, so a truncated file never has the name of an order. An interrupted transfer
+     * resumes from the end of the .part file, in this call or in a later one.
+     *
+     * @param listedSize size of the file in the last listing, or -1 if unknown.
+     * @return true if the complete file is in the local directory.
+     */
+    public boolean downloadPdfFile(String remoteDir, String fileName, String localDir, long listedSize) {
+        String remoteFilePath = remoteDir + "/" + fileName;
+        Path partFile = Paths.get(localDir, fileName + PART_SUFFIX);
+        long start = MetricsUtil.start();
+        boolean success = false;
+        try {
+            Transfer transfer = Transfer.FAILED;
+            for (int attempt = 1; attempt <= TRANSFER_ATTEMPTS && transfer == Transfer.FAILED; attempt++) {
+                transfer = session.execute(ftpClient -> {
+                    long remoteSize = remoteSize(ftpClient, remoteFilePath);
+                    if (listedSize >= 0 && remoteSize >= 0 && remoteSize != listedSize) {
+                        return Transfer.UPLOADING;
+                    }
+                    // The errors of the local disk are not the server's, see FtpSessionController.local
+                    long offset = FtpSessionController.local(() -> Files.exists(partFile) ? Files.size(partFile) : 0);
+                    if (remoteSize >= 0 && offset > remoteSize) {
+                        // The file was replaced on the server, the previous part is useless
+                        FtpSessionController.local(() -> Files.deleteIfExists(partFile));
+                        offset = 0;
+                    }
+                    if (remoteSize < 0 || offset < remoteSize) {
+                        ftpClient.setRestartOffset(offset);
+                        try (OutputStream outputStream = FtpSessionController.local(FtpSessionController.local(
+                                () -> Files.newOutputStream(partFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                            if (!ftpClient.retrieveFile(remoteFilePath, outputStream)) {
+                                if (offset > 0) {
+                                    // Maybe no REST support, the next attempt starts over
+                                    FtpSessionController.local(() -> Files.deleteIfExists(partFile));
+                                }
+                                return Transfer.FAILED;
+                            }
+                        }
+                        long written = offset;
+                        MetricsUtil.addBytes(FtpSessionController.local(() -> Files.size(partFile)) - written);
+                    }
+                    long size = FtpSessionController.local(() -> Files.size(partFile));
+                    boolean trailer = FtpSessionController.local(() -> PdfUtil.endsWithTrailer(partFile, size));
+                    return checkTransfer(ftpClient, remoteFilePath, remoteSize, size, trailer);
+                });
+            }
+
+            if (transfer == Transfer.COMPLETE) {
+                Path target = Paths.get(localDir, fileName);
+                try {
+                    Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING);
                 }
+                success = true;
+                messageUtil.appendMessage("Téléchargement réussi de : " + fileName);
+            } else if (transfer == Transfer.UPLOADING) {
+                messageUtil.appendMessage("Envoi en cours sur le serveur, nouvel essai au prochain passage : " + fileName);
+            } else {
+                messageUtil.appendMessage("Échec du téléchargement de : " + fileName);
             }
         } catch (IOException e) {
             messageUtil.appendMessage("Erreur lors du téléchargement : " + e.getMessage());
         } finally {
-            try {
-                if (ftpClient.isConnected()) {
-                    ftpClient.logout();
-                    ftpClient.disconnect();
-                }
-            } catch (IOException e) {
-                ExceptionUtil.handleException(e);
-            }
+            MetricsUtil.record(MetricsUtil.DOWNLOAD, start, success);
         }
+        return success;
+    }
+
+    public byte[] downloadPdfBytes(String remoteDir, String fileName) {
+        return downloadPdfBytes(remoteDir, fileName, -1);
     }
 
-    public void deletePdfFile(String server, String username, String password, String remoteDir, String fileName) {
-        FTPClient ftpClient = new FTPClient();
+    /**
+     * Download a PDF file straight into memory, without going through a local temporary file.
+     * An interrupted transfer resumes from the bytes already received.
+     *
+     * @param listedSize size of the file in the last listing, or -1 if unknown.
+     * @return the content of the file, or null if the download failed or the file is still being uploaded.
+     */
+    public byte[] downloadPdfBytes(String remoteDir, String fileName, long listedSize) {
+        String remoteFilePath = remoteDir + "/" + fileName;
+        long start = MetricsUtil.start();
+        byte[] content = null;
+        // Kept across the attempts, a retry only fetches the missing end of the file
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(DOWNLOAD_BUFFER_SIZE);
         try {
-            ftpClient.connect(server);
-            ftpClient.login(username, password);
+            Transfer transfer = Transfer.FAILED;
+            for (int attempt = 1; attempt <= TRANSFER_ATTEMPTS && transfer == Transfer.FAILED; attempt++) {
+                transfer = session.execute(ftpClient -> {
+                    long remoteSize = remoteSize(ftpClient, remoteFilePath);
+                    if (listedSize >= 0 && remoteSize >= 0 && remoteSize != listedSize) {
+                        return Transfer.UPLOADING;
+                    }
+                    long offset = buffer.size();
+                    if (remoteSize >= 0 && offset > remoteSize) {
+                        buffer.reset();
+                        offset = 0;
+                    }
+                    if (remoteSize < 0 || offset < remoteSize) {
+                        ftpClient.setRestartOffset(offset);
+                        try (InputStream inputStream = ftpClient.retrieveFileStream(remoteFilePath)) {
+                            if (inputStream == null) {
+                                // Maybe no REST support, the next attempt starts over
+                                buffer.reset();
+                                return Transfer.FAILED;
+                            }
+                            inputStream.transferTo(buffer);
+                        } finally {
+                            MetricsUtil.addBytes(buffer.size() - offset);
+                        }
+                        if (!ftpClient.completePendingCommand()) {
+                            return Transfer.FAILED;
+                        }
+                    }
+                    byte[] bytes = buffer.toByteArray();
+                    return checkTransfer(ftpClient, remoteFilePath, remoteSize, bytes.length,
+                            PdfUtil.endsWithTrailer(bytes, bytes.length));
+                });
+            }
 
-            int replyCode = ftpClient.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(replyCode)) {
-                messageUtil.appendMessage("Échec de la connexion au serveur FTP, code de réponse : " + replyCode);
-                return;
+            if (transfer == Transfer.COMPLETE) {
+                content = buffer.toByteArray();
+                messageUtil.appendMessage("Téléchargement réussi de : " + fileName);
+            } else if (transfer == Transfer.UPLOADING) {
+                messageUtil.appendMessage("Envoi en cours sur le serveur, nouvel essai au prochain passage : " + fileName);
+            } else {
+                messageUtil.appendMessage("Échec du téléchargement de : " + fileName);
             }
+            return content;
+        } catch (IOException e) {
+            messageUtil.appendMessage("Erreur lors du téléchargement : " + e.getMessage());
+            return null;
+        } finally {
+            MetricsUtil.record(MetricsUtil.DOWNLOAD, start, content != null);
+        }
+    }
 
-            ftpClient.enterLocalPassiveMode();
+    /**
+     * Tell a complete download from a short transfer or a file still being uploaded.
+     */
+    private static Transfer checkTransfer(FTPClient ftpClient, String remoteFilePath, long remoteSize,
+                                          long size, boolean hasTrailer) throws IOException {
+        if (remoteSize >= 0 && size != remoteSize) {
+            // The data connection was closed early, the next attempt resumes
+            return Transfer.FAILED;
+        }
+        if (hasTrailer) {
+            return Transfer.COMPLETE;
+        }
+        // Without its trailer the PDF may still be growing, unless the server says it has not changed for a while
+        Instant modified = ftpClient.mdtmInstant(remoteFilePath);
+        if (modified != null && modified.isAfter(Instant.now().minusSeconds(UPLOAD_STABLE_SECONDS))) {
+            return Transfer.UPLOADING;
+        }
+        return Transfer.COMPLETE;
+    }
 
-            String remoteFilePath = remoteDir + "/" + fileName;
-            boolean success = ftpClient.deleteFile(remoteFilePath);
+    /**
+     * @return the size of a remote file given by the SIZE command, or -1 if the server does not support it.
+     */
+    private static long remoteSize(FTPClient ftpClient, String remoteFilePath) throws IOException {
+        String size = ftpClient.getSize(remoteFilePath);
+        if (size == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(size.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public boolean deletePdfFile(String remoteDir, String fileName) {
+        String remoteFilePath = remoteDir + "/" + fileName;
+        long start = MetricsUtil.start();
+        boolean success = false;
+        try {
+            // A deletion is not repeated: its reply may be lost after the server carried it out,
+            // and an order left on the server is deleted again when it is next listed
+            success = session.executeOnce(ftpClient -> ftpClient.deleteFile(remoteFilePath));
             if (success) {
                 messageUtil.appendMessage("Suppression réussie de : " + fileName);
             } else {
                 messageUtil.appendMessage("Échec de la suppression de : " + fileName);
             }
+            return success;
         } catch (IOException e) {
             messageUtil.appendMessage("Erreur lors de la suppression : " + e.getMessage());
+            return false;
         } finally {
-            try {
-                if (ftpClient.isConnected()) {
-                    ftpClient.logout();
-                    ftpClient.disconnect();
-                }
-            } catch (IOException e) {
-                ExceptionUtil.handleException(e);
-            }
+            MetricsUtil.record(MetricsUtil.DELETE, start, success);
         }
     }
 }
@@ -0,0 +1,387 @@
+package com.kitchenreceiptprint.controller;
+
+import com.kitchenreceiptprint.model.FtpSettings;
+import com.kitchenreceiptprint.util.CircuitBreakerUtil;
+import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MessageUtil;
+import com.kitchenreceiptprint.util.MetricsUtil;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class FtpSessionController
+ *
+ * Holds a single authenticated FTP control connection that is shared by every operation of a
+ * poll cycle (listing, downloading and deleting). The connection is opened lazily on first use,
+ * kept alive with NOOP commands between polls and transparently re-established when the server
+ * drops it.
+ *
+ * Responsibilities:
+ * - Connect and log in to the FTP server only when no usable session exists.
+ * - Execute FTP operations one at a time over the shared control connection.
+ * - Send keep-alive commands while the session is idle so the server does not close it.
+ * - Bound every connection, command and transfer with the configured timeouts (FtpSettings).
+ * - Retry a failed operation on a new connection with a jittered exponential delay, unless it must
+ *   not be repeated (executeOnce) or the failure is local (see local).
+ * - Fail fast through the circuit breaker of the server while it is unreachable, only the failures
+ *   of the server and the network counting against it.
+ *
+ * Usage:
+ * An instance is created for a given server and set of credentials, passed to the
+ * FtpDownloaderController and closed when the periodic task is stopped.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - FTPClient is not thread-safe, all access goes through the execute method, one operation at a time.
+ * - A single daemon thread sends the keep-alive commands of all the sessions and skips the busy ones.
+ * - The circuit breaker is shared by all the sessions of a source, so the download and cleanup
+ *   workers stop hitting a dead server as soon as the discovery does.
+ */
+public class FtpSessionController implements AutoCloseable {
+    private static final long KEEP_ALIVE_INTERVAL_SECONDS = 30;
+
+    // One thread sends the keep-alive commands of every session
+    private static final ScheduledExecutorService KEEP_ALIVE_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ftp-keepalive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String server;
+    private final String username;
+    private final String password;
+    private final MessageUtil messageUtil;
+    private final FtpSettings settings;
+    private final CircuitBreakerUtil breaker;
+    private final ScheduledFuture<?> keepAliveTask;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FTPClient ftpClient;
+    private long lastActivity;
+
+    @FunctionalInterface
+    public interface FtpOperation<T> {
+        T run(FTPClient ftpClient) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface LocalOperation<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Thrown without touching the network while the circuit breaker of the server is open.
+     */
+    public static class UnavailableException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public UnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    public FtpSessionController(String server, String username, String password, MessageUtil messageUtil) {
+        this(server, username, password, messageUtil, FtpSettings.DEFAULT,
+                new CircuitBreakerUtil("Serveur FTP " + server, FtpSettings.DEFAULT.getBreakerThreshold(),
+                        FtpSettings.DEFAULT.getBreakerOpenSeconds(), messageUtil));
+    }
+
+    /**
+     * @param breaker circuit breaker of the server, shared by all the sessions opened to it.
+     */
+    public FtpSessionController(String server, String username, String password, MessageUtil messageUtil,
+                                FtpSettings settings, CircuitBreakerUtil breaker) {
+        this.server = server;
+        this.username = username;
+        this.password = password;
+        this.messageUtil = messageUtil;
+        this.settings = settings;
+        this.breaker = breaker;
+
+        this.keepAliveTask = KEEP_ALIVE_EXECUTOR.scheduleWithFixedDelay(this::keepAlive,
+                KEEP_ALIVE_INTERVAL_SECONDS, KEEP_ALIVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Run an operation over the shared session, connecting first if needed.
+     * A failed operation is retried on a new connection after a jittered exponential delay, up to
+     * ftp_retries times. While the circuit breaker is open the operation fails at once, and when it is
+     * half-open a NOOP on a new connection checks that the server answers before the operation runs.
+     * The local errors raised through local are neither retried nor held against the server.
+     *
+     * @return the result of the operation.
+     * @throws UnavailableException if the circuit breaker of the server is open.
+     */
+    public <T> T execute(FtpOperation<T> operation) throws IOException {
+        return execute(operation, settings.getRetries() + 1);
+    }
+
+    /**
+     * Run an operation that must not be repeated, e.g. a deletion whose reply may be lost after the
+     * server carried it out: it is tried once, a failure still counting against the server.
+     *
+     * @see #execute(FtpOperation)
+     */
+    public <T> T executeOnce(FtpOperation<T> operation) throws IOException {
+        return execute(operation, 1);
+    }
+
+    /**
+     * Run a local file operation inside an FTP operation, so that its failure, e.g. a full disk, is
+     * reported as a local error: the operation is not retried and the server is not blamed.
+     */
+    public static <T> T local(LocalOperation<T> operation) {
+        try {
+            return operation.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the stream, its write errors reported as local errors, see local.
+     */
+    public static OutputStream local(OutputStream stream) {
+        return new FilterOutputStream(stream) {
+            @Override
+            public void write(int b) {
+                local(() -> {
+                    out.write(b);
+                    return null;
+                });
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                local(() -> {
+                    out.write(b, off, len);
+                    return null;
+                });
+            }
+
+            @Override
+            public void flush() {
+                local(() -> {
+                    out.flush();
+                    return null;
+                });
+            }
+
+            @Override
+            public void close() {
+                local(() -> {
+                    out.close();
+                    return null;
+                });
+            }
+        };
+    }
+
+    private <T> T execute(FtpOperation<T> operation, int attempts) throws IOException {
+        CircuitBreakerUtil.State admission = breaker.acquire();
+        if (admission == CircuitBreakerUtil.State.OPEN) {
+            throw new UnavailableException("Serveur FTP injoignable, nouvel essai dans "
+                    + breaker.getRetryInSeconds() + " s");
+        }
+
+        lock.lock();
+        boolean success = false;
+        // Only a failure of the server or of the network opens the breaker, not a local error
+        boolean serverFailed = false;
+        try {
+            if (admission == CircuitBreakerUtil.State.HALF_OPEN) {
+                // The only admission of a half-open breaker must not wait for a whole transfer
+                try {
+                    probe();
+                } catch (IOException e) {
+                    serverFailed = true;
+                    throw e;
+                }
+                breaker.onSuccess();
+            }
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    T result = operation.run(connect());
+                    success = true;
+                    return result;
+                } catch (UncheckedIOException e) {
+                    // A transfer may have been left half done
+                    disconnect();
+                    throw e.getCause();
+                } catch (IOException e) {
+                    // The connection may be left in an unknown state, the next attempt starts over
+                    disconnect();
+                    if (attempt >= attempts) {
+                        serverFailed = true;
+                        throw e;
+                    }
+                    messageUtil.appendMessage("Erreur FTP, nouvel essai (" + attempt + "/" + (attempts - 1) + ") : " + e.getMessage());
+                    sleepBeforeRetry(attempt);
+                }
+            }
+        } finally {
+            lastActivity = System.currentTimeMillis();
+            lock.unlock();
+            if (success) {
+                breaker.onSuccess();
+            } else if (serverFailed) {
+                breaker.onFailure();
+            }
+        }
+    }
+
+    /**
+     * Check that the server answers again with a NOOP on a new connection, without retrying.
+     */
+    private void probe() throws IOException {
+        disconnect();
+        try {
+            FTPClient client = connect();
+            if (!client.sendNoOp()) {
+                throw new IOException("Le serveur FTP ne répond pas, code de réponse: " + client.getReplyCode());
+            }
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private void sleepBeforeRetry(int attempt) throws InterruptedIOException {
+        long delay = (long) settings.getRetryDelayMillis() << Math.min(attempt - 1, 10);
+        // Equal jitter, so the sessions of a server that comes back do not reconnect all at once
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(jittered);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrompu avant un nouvel essai FTP");
+        }
+    }
+
+    private FTPClient connect() throws IOException {
+        if (ftpClient != null && ftpClient.isConnected()) {
+            return ftpClient;
+        }
+
+        long start = MetricsUtil.start();
+        boolean connected = false;
+        try {
+            ftpClient = openClient();
+            connected = true;
+            return ftpClient;
+        } finally {
+            MetricsUtil.record(MetricsUtil.FTP_CONNECT, start, connected);
+        }
+    }
+
+    private FTPClient openClient() throws IOException {
+        FTPClient client = new FTPClient();
+        client.setControlKeepAliveTimeout(Duration.ofSeconds(KEEP_ALIVE_INTERVAL_SECONDS));
+        // Without timeouts a server that stops answering would block the calling thread for minutes
+        client.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(settings.getConnectTimeoutSeconds()));
+        client.setDefaultTimeout((int) TimeUnit.SECONDS.toMillis(settings.getSocketTimeoutSeconds()));
+        client.setDataTimeout(Duration.ofSeconds(settings.getDataTimeoutSeconds()));
+        // The server may be given as "host" or "host:port"
+        int separator = server.lastIndexOf(':');
+        if (separator > 0 && server.indexOf(':') == separator) {
+            client.connect(server.substring(0, separator), Integer.parseInt(server.substring(separator + 1).trim()));
+        } else {
+            client.connect(server);
+        }
+
+        if (!client.login(username, password)) {
+            int replyCode = client.getReplyCode();
+            client.disconnect();
+            throw new IOException("Échec de la connexion au serveur FTP, code de réponse: " + replyCode);
+        }
+
+        int replyCode = client.getReplyCode();
+        if (!FTPReply.isPositiveCompletion(replyCode)) {
+            client.disconnect();
+            throw new IOException("Échec de la connexion au serveur FTP, code de réponse: " + replyCode);
+        }
+
+        client.enterLocalPassiveMode();
+        client.setFileType(FTPClient.BINARY_FILE_TYPE);
+        return client;
+    }
+
+    private void keepAlive() {
+        // A busy session needs no keep-alive, and waiting for it would delay the other sessions
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            sendKeepAlive();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sendKeepAlive() {
+        if (ftpClient == null || !ftpClient.isConnected()) {
+            return;
+        }
+        if (System.currentTimeMillis() - lastActivity < TimeUnit.SECONDS.toMillis(KEEP_ALIVE_INTERVAL_SECONDS)) {
+            return;
+        }
+        try {
+            if (!ftpClient.sendNoOp()) {
+                disconnect();
+            }
+            lastActivity = System.currentTimeMillis();
+        } catch (IOException e) {
+            // The session will be re-opened lazily by the next operation
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        if (ftpClient == null) {
+            return;
+        }
+        try {
+            if (ftpClient.isConnected()) {
+                ftpClient.logout();
+            }
+        } catch (IOException e) {
+            // Ignore, the connection is being discarded anyway
+        } finally {
+            try {
+                if (ftpClient.isConnected()) {
+                    ftpClient.disconnect();
+                }
+            } catch (IOException e) {
+                ExceptionUtil.handleException(e);
+            }
+            ftpClient = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        keepAliveTask.cancel(false);
+        lock.lock();
+        try {
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package com.kitchenreceiptprint.controller;
 
 import com.kitchenreceiptprint.App;
+import com.kitchenreceiptprint.model.ConfigurationSnapshot;
 import com.kitchenreceiptprint.model.DatabaseModel;
-import com.kitchenreceiptprint.util.CryptoUtil;
 import com.kitchenreceiptprint.util.ExceptionUtil;
 import com.kitchenreceiptprint.util.MessageUtil;
 import com.kitchenreceiptprint.view.AboutLayoutView;
 import com.kitchenreceiptprint.view.ConfigLayoutView;
+import com.kitchenreceiptprint.view.MainLayoutView;
+import com.kitchenreceiptprint.view.MessageListView;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressIndicator;
-import javafx.scene.control.TextArea;
-import java.io.File;
+
+import java.util.List;
 
 /**
  * Class MainLayoutController
@@ -23,9 +25,10 @@ import java.io.File;
  * as well as navigating to different configuration screens.
  *
  * Responsibilities:
- * - Launch and stop periodic tasks via PeriodicTaskRunnerController.
+ * - Launch and stop the processing of orders via OrderProcessingController.
  * - Show and hide UI elements based on task state.
  * - Manage navigation to configuration and information screens.
+ * - Reprint an order kept in the local cache, e.g. after a paper jam.
  *
  * Usage:
  * This class is bound to buttons and other UI elements defined in the associated FXML file.
@@ -41,6 +44,8 @@ public class MainLayoutController {
 
     private MessageUtil message;
 
+    private OrderProcessingController processing;
+
     private void showLaunchButton(boolean show) {
         launchButton.setVisible(show);
     }
@@ -67,11 +72,33 @@ public class MainLayoutController {
         if (PeriodicTaskRunnerController.isTaskRunning()) {
             PeriodicTaskRunnerController.pause();
             showResumeButton(true);
-            textArea.setVisible(false);
+            messageList.setVisible(false);
             System.out.println("Tâche en pause");
         }
     }
 
+    @FXML
+    private void handleReprint() {
+        if (launchButton.isDisabled()) {
+            // The database is not open yet
+            return;
+        }
+        ConfigurationSnapshot config = model.getSnapshot();
+        // Listing the cache may scan the folder of the orders and rendering an order takes a moment,
+        // both are kept off the JavaFX thread
+        runInBackground("reprint", () -> {
+            List<String> orders = processing.getCachedOrders(config);
+            Platform.runLater(() -> MainLayoutView.chooseOrderToReprint(orders)
+                    .ifPresent(key -> runInBackground("reprint", () -> processing.reprint(key))));
+        });
+    }
+
+    private static void runInBackground(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     @FXML
     private void handleExit() {
         new App().stop();
@@ -79,17 +106,17 @@ public class MainLayoutController {
 
     @FXML
     private void handleSettings() {
-        PeriodicTaskRunnerController.killTask();
+        processing.stop();
 
         launchButton.setVisible(true);
-        textArea.setVisible(false);
+        messageList.setVisible(false);
 
         ConfigLayoutView ftpConfigView = new ConfigLayoutView();
         ftpConfigView.show();
     }
 
     @FXML
-    private TextArea textArea;
+    private MessageListView messageList;
 
     @FXML
     private Label emptyConfLabel;
@@ -105,7 +132,7 @@ public class MainLayoutController {
         if (!PeriodicTaskRunnerController.isTaskRunning()) {
             PeriodicTaskRunnerController.resume();
             showResumeButton(false);
-            textArea.setVisible(true);
+            messageList.setVisible(true);
             System.out.println("Tâche relancé");
         }
     }
@@ -113,89 +140,63 @@ public class MainLayoutController {
     @FXML
     private void handleLaunchButtonAction() {
         showLaunchButton(false);
-        textArea.setVisible(true);
+        messageList.setVisible(true);
 
-        if (!validateFtpConfig()) {
-            showLaunchButton(true);
-            emptyConfLabel.setVisible(true);
-            return;
-        }
+        // Read the configuration once, every value of this launch comes from the same snapshot
+        ConfigurationSnapshot config = model.getSnapshot();
 
-        String ftp_server = model.getConfiguration("ftp_server");
-        String ftp_username = model.getConfiguration("ftp_username");
-        String ftp_password = CryptoUtil.decrypt(model.getConfiguration("ftp_password"));
-
-        String directoryPath = System.getProperty("java.io.tmpdir") + "pdf";
-        File directory = new File(directoryPath);
-
-        if (!directory.exists()) {
-            boolean isCreated = directory.mkdirs();
-            if (isCreated) {
-                System.out.println("Dossier créé : " + directoryPath);
-            } else {
-                System.out.println("Impossible de créer le dossier : " + directoryPath);
-            }
-        }
-
-        FtpDownloaderController ftpDownloader = new FtpDownloaderController(message);
-        PdfPrinterController PdfPrinter = new PdfPrinterController(message);
-
-        // check if configuration if empty
-        if (model.getConfiguration("ftp_server") == null ||
-                model.getConfiguration("ftp_username") == null ||
-                model.getConfiguration("ftp_password") == null
-        ) {
-            emptyConfLabel.setVisible(true);
-            launchButton.setVisible(false);
-        } else {
+        // Starting loads the order cache and recovers the journal, it is kept off the JavaFX thread
+        showLoader(true);
+        runInBackground("launch", () -> {
+            boolean started = false;
             try {
-                message.appendMessage("La tâche sera executée toutes les " + model.getConfiguration("interval") + " secondes");
-
-                Runnable task = () -> {
-                    boolean result = ProcessPdfFilesController.processPdfFiles(ftpDownloader,
-                            message,
-                            PdfPrinter,
-                            ftp_server,
-                            ftp_username,
-                            ftp_password,
-                            directoryPath);
-                    if (!result && !PeriodicTaskRunnerController.messageDisplayed) {
-                        Platform.runLater(() -> {
-                            message.appendMessage("Aucune commande trouvée pour le moment ...");
-                        });
-                        PeriodicTaskRunnerController.messageDisplayed = true; // Empêche l'affichage futur
-                    }
-                };
-
-                PeriodicTaskRunnerController.task(task, Integer.parseInt(model.getConfiguration("interval")));
-
+                started = processing.start(config);
             } catch (Exception e) {
                 ExceptionUtil.handleException(e);
             }
-        }
-    }
-
-    private boolean validateFtpConfig() {
-        String ftpServer = model.getConfiguration("ftp_server");
-        String ftpUsername = model.getConfiguration("ftp_username");
-        String ftpPassword = CryptoUtil.decrypt(model.getConfiguration("ftp_password"));
-
-        return ftpServer != null &&
-                ftpUsername != null &&
-                ftpPassword != null;
+            boolean launched = started;
+            Platform.runLater(() -> {
+                showLoader(false);
+                if (!launched) {
+                    showLaunchButton(true);
+                    emptyConfLabel.setVisible(true);
+                }
+            });
+        });
     }
 
     public void initialize() {
-        message = new MessageUtil(textArea);
+        message = new MessageUtil();
+        messageList.attach(message);
+        processing = new OrderProcessingController(message);
         this.model = DatabaseModel.getInstance();
 
-        // Initialize the database
-        DatabaseModel.createDatabase();
-
-        // Set default interval value
-        if (model.getConfiguration("interval") == null ||
-                model.getConfiguration("interval").isEmpty()) {
-            model.addConfiguration("interval", "60");
-        }
+        // The database is opened in the background so the window shows up right away,
+        // the start button is enabled once it is ready
+        launchButton.setDisable(true);
+        showLoader(true);
+        Thread startup = new Thread(() -> {
+            try {
+                // Initialize the database
+                DatabaseModel.createDatabase();
+
+                // Set default interval value
+                String interval = model.getConfiguration("interval");
+                if (interval == null || interval.isEmpty()) {
+                    model.addConfiguration("interval", "60");
+                }
+            } catch (Exception e) {
+                ExceptionUtil.handleException(e);
+            } finally {
+                Platform.runLater(() -> {
+                    showLoader(false);
+                    launchButton.setDisable(false);
+                });
+            }
+            // Prepare printing while the user is still on the start screen
+            PdfPrinterController.warmUp();
+        }, "startup");
+        startup.setDaemon(true);
+        startup.start();
     }
 }
@@ -0,0 +1,288 @@
+package com.kitchenreceiptprint.controller;
+
+import com.kitchenreceiptprint.model.RenderedOrder;
+import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MessageUtil;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class OrderCacheController
+ *
+ * Local cache of the printed orders, so a jammed ticket can be printed again after the order was
+ * deleted from the server. The PDF of each order is kept in the local folder of the orders, where
+ * the "file" download mode already writes it, and the pages rendered for the last orders are kept
+ * in memory so that a reprint does not even parse the PDF again.
+ *
+ * Responsibilities:
+ * - Keep the PDF of every printed order under the key of the order in the journal, i.e. in a
+ *   sub-folder per source for the sources other than the default one.
+ * - Keep the rendered pages of the most recently used orders, up to cache_memory_mb.
+ * - Delete the orders older than cache_ttl_hours, and the least recently used ones while the
+ *   folder is larger than cache_max_mb.
+ * - Index the folder when created, so the orders printed before a restart can still be reprinted
+ *   and the files left by older versions are cleaned up as well.
+ *
+ * Usage:
+ * Created by OrderProcessingController on start and handed to the PdfPrinterController, which
+ * stores the rendered pages, and to the pipelines, which store the PDF once an order is printed.
+ * The main window lists the cached orders with getOrders and reprints one through the printer.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - The index is kept in memory and rebuilt from the folder, the file dates giving the age of the
+ *   orders, so the cache needs no table.
+ * - Only the .pdf files are indexed, the .part files of the downloads in progress are left alone
+ *   unless they are older than the time-to-live.
+ */
+public class OrderCacheController {
+    private static final String PDF_SUFFIX = ".pdf";
+    private static final String PART_SUFFIX = ".part";
+
+    private final MessageUtil messageUtil;
+    private final Path directory;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final long maxRenderedBytes;
+
+    // Least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long fileBytes;
+    private long renderedBytes;
+
+    private static final class Entry {
+        private final long cachedAt;
+        private Path file;
+        private long fileSize;
+        private RenderedOrder rendered;
+        private long renderedSize;
+
+        private Entry(long cachedAt) {
+            this.cachedAt = cachedAt;
+        }
+    }
+
+    /**
+     * @param directory        the local folder of the orders.
+     * @param maxBytes         size of the PDF files above which the least recently used are deleted.
+     * @param ttlMillis        age above which an order is deleted.
+     * @param maxRenderedBytes memory above which the least recently used rendered pages are dropped.
+     */
+    public OrderCacheController(MessageUtil messageUtil, Path directory, long maxBytes, long ttlMillis,
+                                long maxRenderedBytes) {
+        this.messageUtil = messageUtil;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.maxRenderedBytes = maxRenderedBytes;
+    }
+
+    /**
+     * Index the orders already in the folder, oldest first, and apply the limits.
+     */
+    public synchronized void load() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - ttlMillis;
+        List<Path> orders = new ArrayList<>();
+        // The default source writes in the folder itself, the other sources in a sub-folder
+        try (Stream<Path> files = Files.find(directory, 2, (path, attributes) -> attributes.isRegularFile())) {
+            for (Path file : files.collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PDF_SUFFIX)) {
+                    orders.add(file);
+                } else if (name.endsWith(PART_SUFFIX) && lastModified(file) < expired) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            ExceptionUtil.handleException(e);
+            return;
+        }
+
+        orders.sort(Comparator.comparingLong(OrderCacheController::lastModified));
+        for (Path file : orders) {
+            String key = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            Entry entry = new Entry(lastModified(file));
+            entry.file = file;
+            entry.fileSize = size(file);
+            entries.put(key, entry);
+            fileBytes += entry.fileSize;
+        }
+        evict();
+    }
+
+    /**
+     * Keep the PDF of a printed order held in memory.
+     */
+    public void put(String key, byte[] content) {
+        Path file = directory.resolve(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+        } catch (IOException e) {
+            messageUtil.appendMessage("Impossible de conserver la commande : " + key);
+            ExceptionUtil.handleException(e);
+            return;
+        }
+        register(key, file);
+    }
+
+    /**
+     * Keep the PDF of a printed order read from a file, copied unless it is already in the folder.
+     */
+    public void put(String key, Path source) {
+        Path file = directory.resolve(key);
+        try {
+            if (!Files.exists(file) || !Files.isSameFile(source, file)) {
+                Files.createDirectories(file.getParent());
+                Path copy = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+                Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+                try {
+                    Files.move(copy, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            messageUtil.appendMessage("Impossible de conserver la commande : " + key);
+            ExceptionUtil.handleException(e);
+            return;
+        }
+        register(key, file);
+    }
+
+    /**
+     * Keep the rendered pages of an order, the PDF is stored separately by put.
+     */
+    public synchronized void putRendered(String key, RenderedOrder rendered) {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(System.currentTimeMillis()));
+        long size = rendered.getImageBytes();
+        renderedBytes += size - entry.renderedSize;
+        entry.rendered = rendered;
+        entry.renderedSize = size;
+        evict();
+    }
+
+    /**
+     * @return the keys of the cached orders, the most recently cached first.
+     */
+    public synchronized List<String> getOrders() {
+        evict();
+        List<Map.Entry<String, Entry>> cached = new ArrayList<>(entries.entrySet());
+        cached.sort(Comparator.comparingLong((Map.Entry<String, Entry> e) -> e.getValue().cachedAt).reversed());
+        List<String> keys = new ArrayList<>(cached.size());
+        for (Map.Entry<String, Entry> entry : cached) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * @return the rendered pages of an order, or null if they are no longer in memory.
+     */
+    public synchronized RenderedOrder getRendered(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.rendered : null;
+    }
+
+    /**
+     * @return the PDF of an order, or null if it is not cached.
+     */
+    public synchronized Path getFile(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.file != null && Files.exists(entry.file) ? entry.file : null;
+    }
+
+    private synchronized void register(String key, Path file) {
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(System.currentTimeMillis()));
+        fileBytes -= entry.fileSize;
+        entry.file = file;
+        entry.fileSize = size(file);
+        fileBytes += entry.fileSize;
+        evict();
+    }
+
+    /**
+     * Drop the expired orders, then the least recently used files and rendered pages above the limits.
+     */
+    private void evict() {
+        long expired = System.currentTimeMillis() - ttlMillis;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.cachedAt < expired) {
+                deleteFile(entry);
+                dropRendered(entry);
+                iterator.remove();
+            }
+        }
+
+        iterator = entries.values().iterator();
+        while (iterator.hasNext() && (fileBytes > maxBytes || renderedBytes > maxRenderedBytes)) {
+            Entry entry = iterator.next();
+            if (fileBytes > maxBytes) {
+                deleteFile(entry);
+            }
+            if (renderedBytes > maxRenderedBytes) {
+                dropRendered(entry);
+            }
+            if (entry.file == null && entry.rendered == null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void deleteFile(Entry entry) {
+        if (entry.file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.file);
+        } catch (IOException e) {
+            ExceptionUtil.handleException(e);
+        }
+        fileBytes -= entry.fileSize;
+        entry.file = null;
+        entry.fileSize = 0;
+    }
+
+    private void dropRendered(Entry entry) {
+        renderedBytes -= entry.renderedSize;
+        entry.rendered = null;
+        entry.renderedSize = 0;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
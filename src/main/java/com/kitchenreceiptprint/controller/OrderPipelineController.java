@@ -0,0 +1,443 @@
+package com.kitchenreceiptprint.controller;
+
+import com.kitchenreceiptprint.model.DatabaseModel;
+import com.kitchenreceiptprint.model.OrderPriority;
+import com.kitchenreceiptprint.model.OrderRef;
+import com.kitchenreceiptprint.model.OrderSource;
+import com.kitchenreceiptprint.model.OrderState;
+import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MessageUtil;
+import com.kitchenreceiptprint.util.MetricsUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Class OrderPipelineController
+ *
+ * Runs the processing of orders as a staged pipeline: download, print and remote cleanup. Each
+ * stage has its own pool of workers and the stages are connected by bounded queues, so the
+ * download of an order overlaps the printing of the previous one and a slow printer no longer
+ * stalls the following downloads.
+ *
+ * Responsibilities:
+ * - Accept orders found by the discovery step and skip the ones already being processed.
+ * - Download, print and delete each order on the worker pool of the matching stage.
+ * - Hand each order to the per-printer queues of the PdfPrinterController and delete it from the
+ *   server once every printer has handled it.
+ * - Apply backpressure: when a stage falls behind, its input queue fills up and the previous
+ *   stage (up to the discovery) blocks until room is available.
+ * - Record the progress of every order in the order journal and resume from it: an order already
+ *   printed is only deleted, never printed again.
+ * - Keep the PDF of every printed order in the OrderCacheController, so it can be reprinted once
+ *   deleted from its source.
+ * - Download and print the waiting orders by priority, see OrderPriority: the level comes from the
+ *   tag of the file name, or from the PDF metadata in the printer queues once the order is rendered.
+ *
+ * Usage:
+ * A pipeline is created for each source of orders with a factory of FTP sessions to its server, so
+ * that every download and cleanup worker owns its own connection, and the order cache, then started. The pipeline of a
+ * FOLDER source has no session: its orders are printed from the folder, given as directoryPath,
+ * and deleted from it. The periodic discovery task submits the file
+ * names it finds and the pipeline is shut down when the task is killed.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - Workers are daemon platform threads, the application targets Java 11 which has no virtual threads.
+ * - Every download and cleanup worker owns its FTP session and closes it when the pipeline shuts down.
+ * - An order is removed from the in-flight set once it has been deleted from the server or its
+ *   download or printing failed, so that a later discovery can submit it again.
+ * - An order is deleted from the server only when every printer has printed it.
+ * - Orders are journaled under the key of their source, see OrderSource.journalKey. The printers
+ *   are shared by all the pipelines and stopped by their owner, not by shutdown.
+ * - The download and print queues are bounded priority queues, the cleanup queue stays in order.
+ */
+public class OrderPipelineController {
+    private final DatabaseModel model;
+    private final MessageUtil messageUtil;
+    private final OrderSource source;
+    private final Supplier<FtpSessionController> sessionFactory;
+    private final PdfPrinterController pdfPrinter;
+    // Null when the orders are not cached
+    private final OrderCacheController orderCache;
+    private final String directoryPath;
+
+    private final BoundedPriorityQueue downloadQueue;
+    private final BoundedPriorityQueue printQueue;
+    private final BlockingQueue<PrintedOrder> cleanupQueue;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService downloadWorkers;
+    private final ExecutorService printWorkers;
+    private final ExecutorService cleanupWorkers;
+    private final int downloadWorkerCount;
+    private final int printWorkerCount;
+    private final int cleanupWorkerCount;
+
+    private static final class PrintedOrder {
+        private final String fileName;
+        private final String key;
+        private final CompletableFuture<Boolean> printed;
+        // The PDF downloaded in memory, null when it is a file of directoryPath or when the order was printed before
+        private final byte[] content;
+
+        private PrintedOrder(String fileName, String key, CompletableFuture<Boolean> printed) {
+            this(fileName, key, printed, null);
+        }
+
+        private PrintedOrder(String fileName, String key, CompletableFuture<Boolean> printed, byte[] content) {
+            this.fileName = fileName;
+            this.key = key;
+            this.printed = printed;
+            this.content = content;
+        }
+    }
+
+    private static final class ScheduledOrder {
+        // Smallest virtual deadline first, then oldest first
+        private static final Comparator<ScheduledOrder> BY_DEADLINE = Comparator
+                .comparingLong((ScheduledOrder scheduled) -> scheduled.deadline)
+                .thenComparing(scheduled -> scheduled.order, OrderRef.OLDEST_FIRST);
+
+        private final OrderRef order;
+        private final String key;
+        // -1 when the file name has no priority tag, the metadata may then give the level once the order is rendered
+        private final int level;
+        private final long deadline;
+        private final byte[] content;
+
+        private ScheduledOrder(OrderRef order, String key, int level, long deadline, byte[] content) {
+            this.order = order;
+            this.key = key;
+            this.level = level;
+            this.deadline = deadline;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Priority queue with a capacity, put blocks while it is full like an ArrayBlockingQueue.
+     */
+    private static final class BoundedPriorityQueue {
+        private final PriorityBlockingQueue<ScheduledOrder> queue;
+        private final Semaphore slots;
+
+        private BoundedPriorityQueue(int capacity) {
+            this.queue = new PriorityBlockingQueue<>(capacity, ScheduledOrder.BY_DEADLINE);
+            this.slots = new Semaphore(capacity);
+        }
+
+        private void put(ScheduledOrder order) throws InterruptedException {
+            slots.acquire();
+            queue.add(order);
+        }
+
+        private ScheduledOrder take() throws InterruptedException {
+            ScheduledOrder order = queue.take();
+            slots.release();
+            return order;
+        }
+
+        private void clear() {
+            slots.release(queue.drainTo(new ArrayList<>()));
+        }
+    }
+
+    public OrderPipelineController(MessageUtil messageUtil,
+                                   OrderSource source,
+                                   Supplier<FtpSessionController> sessionFactory,
+                                   PdfPrinterController pdfPrinter,
+                                   OrderCacheController orderCache,
+                                   String directoryPath,
+                                   int downloadWorkerCount,
+                                   int printWorkerCount,
+                                   int cleanupWorkerCount,
+                                   int queueCapacity) {
+        this.model = DatabaseModel.getInstance();
+        this.messageUtil = messageUtil;
+        this.source = source;
+        this.sessionFactory = sessionFactory;
+        this.pdfPrinter = pdfPrinter;
+        this.orderCache = orderCache;
+        this.directoryPath = directoryPath;
+
+        this.downloadQueue = new BoundedPriorityQueue(queueCapacity);
+        this.printQueue = new BoundedPriorityQueue(queueCapacity);
+        this.cleanupQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.downloadWorkerCount = Math.max(1, downloadWorkerCount);
+        this.printWorkerCount = Math.max(1, printWorkerCount);
+        this.cleanupWorkerCount = Math.max(1, cleanupWorkerCount);
+        this.downloadWorkers = Executors.newFixedThreadPool(this.downloadWorkerCount, threadFactory("order-download-" + source.getName()));
+        this.printWorkers = Executors.newFixedThreadPool(this.printWorkerCount, threadFactory("order-print-" + source.getName()));
+        this.cleanupWorkers = Executors.newFixedThreadPool(this.cleanupWorkerCount, threadFactory("order-cleanup-" + source.getName()));
+    }
+
+    public void start() {
+        for (int i = 0; i < downloadWorkerCount; i++) {
+            downloadWorkers.execute(this::downloadLoop);
+        }
+        for (int i = 0; i < printWorkerCount; i++) {
+            printWorkers.execute(this::printLoop);
+        }
+        for (int i = 0; i < cleanupWorkerCount; i++) {
+            cleanupWorkers.execute(this::cleanupLoop);
+        }
+        threadFactory("order-recovery-" + source.getName()).newThread(this::recoverPrintedOrders).start();
+    }
+
+    public OrderSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return the order in which the discovery should submit the orders it found, most urgent first.
+     */
+    public Comparator<OrderRef> getSubmissionOrder() {
+        return model.getSnapshot().getPriorities().getOrder();
+    }
+
+    /**
+     * Submit an order found on the server. Blocks while the download queue is full.
+     *
+     * @return false if the order is already being processed.
+     */
+    public boolean submit(OrderRef order) throws InterruptedException {
+        String fileName = order.getFileName();
+        String key = source.journalKey(fileName);
+        if (!inFlight.add(key)) {
+            return false;
+        }
+
+        OrderState state = model.getJournalState(key);
+        if (state == OrderState.PRINTED || state == OrderState.DELETED) {
+            // Already printed everywhere, only the remote file is left to delete
+            messageUtil.appendMessage("Commande déjà imprimée : " + key);
+            cleanupQueue.put(new PrintedOrder(fileName, key, CompletableFuture.completedFuture(true)));
+            return true;
+        }
+        if (state == null) {
+            model.journalOrder(key, OrderState.DISCOVERED);
+        }
+        OrderPriority priorities = model.getSnapshot().getPriorities();
+        int level = priorities.levelOf(order.getTag());
+        long deadline = priorities.deadline(order.getSortKey(), level < 0 ? priorities.getDefaultLevel() : level);
+        messageUtil.appendMessage("Traitement du fichier : " + key);
+        downloadQueue.put(new ScheduledOrder(order, key, level, deadline, null));
+        return true;
+    }
+
+    public void shutdown() {
+        downloadWorkers.shutdownNow();
+        printWorkers.shutdownNow();
+        cleanupWorkers.shutdownNow();
+        downloadQueue.clear();
+        printQueue.clear();
+        cleanupQueue.clear();
+        inFlight.clear();
+    }
+
+    private void downloadLoop() {
+        FtpSessionController session = source.isFolder() ? null : sessionFactory.get();
+        FtpDownloaderController ftpDownloader = session != null ? new FtpDownloaderController(messageUtil, session) : null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ScheduledOrder scheduled = downloadQueue.take();
+                OrderRef order = scheduled.order;
+                String fileName = order.getFileName();
+                String key = scheduled.key;
+                try {
+                    byte[] content = null;
+                    if (source.isFolder()) {
+                        // Nothing to download, the order is printed straight from the watched folder
+                        if (!Files.exists(Paths.get(directoryPath, fileName))) {
+                            inFlight.remove(key);
+                            continue;
+                        }
+                    } else if (directoryPath == null) {
+                        content = ftpDownloader.downloadPdfBytes(source.getDirectory(), fileName, order.getSize());
+                        if (content == null) {
+                            inFlight.remove(key);
+                            continue;
+                        }
+                    } else if (!ftpDownloader.downloadPdfFile(source.getDirectory(), fileName, directoryPath, order.getSize())) {
+                        // Never print a partial file, the order is tried again on the next discovery
+                        inFlight.remove(key);
+                        continue;
+                    }
+                    model.journalOrder(key, OrderState.DOWNLOADED);
+                    printQueue.put(new ScheduledOrder(scheduled.order, key, scheduled.level, scheduled.deadline, content));
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    inFlight.remove(key);
+                    ExceptionUtil.handleException(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private void printLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ScheduledOrder order = printQueue.take();
+                String fileName = order.order.getFileName();
+                CompletableFuture<Boolean> printed;
+                try {
+                    if (order.content != null) {
+                        printed = pdfPrinter.printPdfMultiplePrinters(order.key, order.content, printDeadline(order));
+                    } else {
+                        printed = pdfPrinter.printPdfMultiplePrinters(order.key, new File(directoryPath, fileName), printDeadline(order));
+                    }
+                } catch (Exception e) {
+                    ExceptionUtil.handleException(e);
+                    printed = CompletableFuture.completedFuture(false);
+                }
+                printed.thenAccept(complete -> {
+                    if (complete) {
+                        MetricsUtil.orderPrinted();
+                    }
+                });
+                cleanupQueue.put(new PrintedOrder(fileName, order.key, printed, order.content));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cleanupLoop() {
+        FtpSessionController session = source.isFolder() ? null : sessionFactory.get();
+        FtpDownloaderController ftpDownloader = session != null ? new FtpDownloaderController(messageUtil, session) : null;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                PrintedOrder order = cleanupQueue.take();
+                try {
+                    // The remote file is only deleted once every printer has printed the order
+                    if (!order.printed.get()) {
+                        messageUtil.appendMessage("Impression incomplète, nouvel essai au prochain passage : " + order.key);
+                        continue;
+                    }
+                    model.journalOrder(order.key, OrderState.PRINTED);
+                    cache(order);
+                    boolean deleted = source.isFolder()
+                            ? deleteLocalFile(order.fileName)
+                            : ftpDownloader.deletePdfFile(source.getDirectory(), order.fileName);
+                    if (deleted) {
+                        model.journalOrder(order.key, OrderState.DELETED);
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    ExceptionUtil.handleException(e);
+                } finally {
+                    inFlight.remove(order.key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * @return the deadline of an order in the printer queues: the one of its file name tag, or else the
+     * one of the Priority entry of its metadata, read by the printer when it renders the order.
+     */
+    private ToLongFunction<String> printDeadline(ScheduledOrder scheduled) {
+        if (scheduled.level >= 0) {
+            long deadline = scheduled.deadline;
+            return priority -> deadline;
+        }
+        OrderPriority priorities = model.getSnapshot().getPriorities();
+        long sortKey = scheduled.order.getSortKey();
+        return priority -> priorities.deadline(sortKey, priorities.levelOrDefault(priority));
+    }
+
+    /**
+     * Keep the PDF of a printed order before it is deleted from its source.
+     */
+    private void cache(PrintedOrder order) {
+        if (orderCache == null) {
+            return;
+        }
+        if (order.content != null) {
+            orderCache.put(order.key, order.content);
+        } else if (directoryPath != null && Files.exists(Paths.get(directoryPath, order.fileName))) {
+            orderCache.put(order.key, Paths.get(directoryPath, order.fileName));
+        }
+    }
+
+    private boolean deleteLocalFile(String fileName) {
+        long start = MetricsUtil.start();
+        boolean success = false;
+        try {
+            Files.deleteIfExists(Paths.get(directoryPath, fileName));
+            messageUtil.appendMessage("Suppression réussie de : " + fileName);
+            success = true;
+        } catch (IOException e) {
+            messageUtil.appendMessage("Échec de la suppression de : " + fileName);
+            ExceptionUtil.handleException(e);
+        } finally {
+            MetricsUtil.record(MetricsUtil.DELETE, start, success);
+        }
+        return success;
+    }
+
+    /**
+     * Delete the orders that were printed before the application stopped, without waiting for them
+     * to be listed again.
+     */
+    private void recoverPrintedOrders() {
+        try {
+            for (String key : model.getJournalOrders(OrderState.PRINTED)) {
+                String fileName = source.fileNameOf(key);
+                // The other orders belong to other sources, recovered by their own pipeline
+                if (fileName != null && inFlight.add(key)) {
+                    messageUtil.appendMessage("Reprise de la commande imprimée : " + key);
+                    cleanupQueue.put(new PrintedOrder(fileName, key, CompletableFuture.completedFuture(true)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,285 @@
+package com.kitchenreceiptprint.controller;
+
+import com.kitchenreceiptprint.model.ConfigurationSnapshot;
+import com.kitchenreceiptprint.model.FtpSettings;
+import com.kitchenreceiptprint.model.OrderSource;
+import com.kitchenreceiptprint.util.CircuitBreakerUtil;
+import com.kitchenreceiptprint.util.CryptoUtil;
+import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MessageUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Class OrderProcessingController
+ *
+ * Wires and runs the processing of orders from a configuration snapshot: for every enabled source
+ * of orders, the FTP session used by the discovery, the order pipeline and the periodic discovery
+ * task. It has no dependency on JavaFX, so the same wiring is used by the main window and by the
+ * headless entry point.
+ *
+ * Responsibilities:
+ * - Check that the FTP configuration of each source is complete, incomplete sources are skipped.
+ * - Create the printer shared by all the sources and the cache of the printed orders.
+ * - Create the FTP session, the downloader and the order pipeline of each source.
+ * - Watch the folder of each FOLDER source, its periodic task only rescans the folder as a safety net.
+ * - Start one periodic discovery task per source with its adaptive intervals.
+ * - Stop the tasks and release the pipelines, the FTP sessions, the folder watchers and the printer.
+ * - List the cached orders and reprint one, also while the processing is stopped.
+ *
+ * Usage:
+ * Create an instance with the MessageUtil receiving the events, call start with the current
+ * configuration snapshot and stop before starting again or when the application exits.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - The periodic tasks are static in PeriodicTaskRunnerController, so a single instance should be
+ *   running at a time.
+ * - Every source has its own scheduler thread, FTP sessions and pipeline workers: a slow or
+ *   unreachable server only delays its own orders. The printer queues are shared, so the tickets
+ *   of all the sources are printed one at a time on each printer.
+ */
+public class OrderProcessingController {
+    private final MessageUtil message;
+
+    private final List<FtpSessionController> ftpSessions = new ArrayList<>();
+
+    private final List<OrderPipelineController> pipelines = new ArrayList<>();
+
+    private final List<FolderWatcherController> folderWatchers = new ArrayList<>();
+
+    private PdfPrinterController pdfPrinter;
+
+    // Kept when the processing stops, so the orders can still be reprinted
+    private OrderCacheController orderCache;
+
+    public OrderProcessingController(MessageUtil message) {
+        this.message = message;
+    }
+
+    /**
+     * Start processing the orders of every enabled source with the given configuration.
+     *
+     * @return false if no source has a complete FTP configuration, nothing is started in that case.
+     */
+    public synchronized boolean start(ConfigurationSnapshot config) {
+        List<OrderSource> sources = new ArrayList<>();
+        for (OrderSource source : config.getSources()) {
+            if (!source.isEnabled()) {
+                continue;
+            }
+            if (source.isFolder() ? isFolderConfigValid(source) : isFtpConfigValid(source)) {
+                sources.add(source);
+            } else if (source.isFolder()) {
+                message.appendMessage("Source ignorée, dossier introuvable : " + source.getDirectory());
+            } else {
+                message.appendMessage("Source ignorée, configuration FTP incomplète : " + source.getName());
+            }
+        }
+        if (sources.isEmpty()) {
+            return false;
+        }
+
+        stop();
+        orderCache = createOrderCache(config);
+        pdfPrinter = new PdfPrinterController(message, orderCache);
+        for (OrderSource source : sources) {
+            try {
+                if (source.isFolder()) {
+                    startFolderSource(config, source);
+                } else {
+                    startSource(config, source);
+                }
+            } catch (Exception e) {
+                ExceptionUtil.handleException(e);
+            }
+        }
+        return true;
+    }
+
+    private void startSource(ConfigurationSnapshot config, OrderSource source) {
+        String ftp_server = source.getServer();
+        String ftp_username = source.getUsername();
+        String ftp_password = CryptoUtil.decrypt(source.getPassword());
+
+        // In "memory" mode (default) the orders are streamed from the FTP server to PDFBox without a temp file
+        String directoryPath = null;
+
+        if ("file".equals(config.get("download_mode"))) {
+            // Two sources may deliver files with the same name, each one gets its own folder
+            directoryPath = localDirectory() + (source.isDefault() ? "" : File.separator + source.getName());
+            File directory = new File(directoryPath);
+
+            if (!directory.exists()) {
+                boolean isCreated = directory.mkdirs();
+                if (isCreated) {
+                    System.out.println("Dossier créé : " + directoryPath);
+                } else {
+                    System.out.println("Impossible de créer le dossier : " + directoryPath);
+                }
+            }
+        }
+
+        // The discovery session and the sessions of the workers share the breaker of the server
+        FtpSettings ftpSettings = FtpSettings.from(config);
+        CircuitBreakerUtil breaker = new CircuitBreakerUtil("Serveur FTP " + ftp_server,
+                ftpSettings.getBreakerThreshold(), ftpSettings.getBreakerOpenSeconds(), message);
+        FtpSessionController ftpSession = new FtpSessionController(ftp_server, ftp_username, ftp_password, message,
+                ftpSettings, breaker);
+        ftpSessions.add(ftpSession);
+        FtpDownloaderController ftpDownloader = new FtpDownloaderController(message, ftpSession);
+
+        OrderPipelineController pipeline = new OrderPipelineController(message,
+                source,
+                () -> new FtpSessionController(ftp_server, ftp_username, ftp_password, message, ftpSettings, breaker),
+                pdfPrinter,
+                orderCache,
+                directoryPath,
+                config.getInt("download_workers", 2),
+                config.getInt("print_workers", 1),
+                config.getInt("cleanup_workers", 1),
+                config.getInt("pipeline_queue_size", 10));
+        pipelines.add(pipeline);
+        pipeline.start();
+
+        int maxInterval = source.getMaxInterval() > 0 ? source.getMaxInterval() : config.getInterval();
+        int minInterval = source.getMinInterval() > 0 ? source.getMinInterval() : config.getInt("interval_min", 5);
+        message.appendMessage(source.getName() + " : la tâche sera executée toutes les " + minInterval + " à " + maxInterval + " secondes");
+
+        boolean[] messageDisplayed = {false};
+        BooleanSupplier task = () -> {
+            boolean result = ProcessPdfFilesController.processPdfFiles(ftpDownloader,
+                    message,
+                    pipeline);
+            if (!result && !messageDisplayed[0]) {
+                message.appendMessage("Aucune commande trouvée pour le moment sur " + source.getName() + " ...");
+                messageDisplayed[0] = true; // Empêche l'affichage futur
+            }
+            return result;
+        };
+
+        PeriodicTaskRunnerController.task(source.getName(), task, minInterval, maxInterval, message);
+    }
+
+    private void startFolderSource(ConfigurationSnapshot config, OrderSource source) throws IOException {
+        OrderPipelineController pipeline = new OrderPipelineController(message,
+                source,
+                null,
+                pdfPrinter,
+                orderCache,
+                source.getDirectory(),
+                config.getInt("download_workers", 2),
+                config.getInt("print_workers", 1),
+                config.getInt("cleanup_workers", 1),
+                config.getInt("pipeline_queue_size", 10));
+        pipelines.add(pipeline);
+        pipeline.start();
+
+        FolderWatcherController folderWatcher = new FolderWatcherController(message, source, pipeline,
+                config.getInt("folder_stable_millis", 500));
+        folderWatchers.add(folderWatcher);
+        folderWatcher.start();
+
+        // The events print the orders as they arrive, the periodic scan only catches what they missed
+        int maxInterval = source.getMaxInterval() > 0 ? source.getMaxInterval() : config.getInterval();
+        int minInterval = source.getMinInterval() > 0 ? source.getMinInterval() : config.getInt("interval_min", 5);
+        PeriodicTaskRunnerController.task(source.getName(), folderWatcher::scan, minInterval, maxInterval, message);
+    }
+
+    /**
+     * Stop the periodic tasks, the pipelines, the FTP sessions and the printer.
+     */
+    public synchronized void stop() {
+        PeriodicTaskRunnerController.killTask();
+        for (OrderPipelineController pipeline : pipelines) {
+            pipeline.shutdown();
+        }
+        pipelines.clear();
+        for (FolderWatcherController folderWatcher : folderWatchers) {
+            folderWatcher.close();
+        }
+        folderWatchers.clear();
+        for (FtpSessionController ftpSession : ftpSessions) {
+            ftpSession.close();
+        }
+        ftpSessions.clear();
+        if (pdfPrinter != null) {
+            pdfPrinter.shutdown();
+            pdfPrinter = null;
+        }
+    }
+
+    /**
+     * @return the keys of the orders that can be reprinted, the most recent first.
+     */
+    public synchronized List<String> getCachedOrders(ConfigurationSnapshot config) {
+        if (orderCache == null) {
+            // Not started yet, the orders printed before the last exit are still in the folder
+            orderCache = createOrderCache(config);
+        }
+        return orderCache.getOrders();
+    }
+
+    /**
+     * Print a cached order again on every printer, without reading it from its source. The order
+     * is rendered on the calling thread when its pages are no longer in memory.
+     *
+     * @return a future completed with true once every printer has printed it.
+     */
+    public CompletableFuture<Boolean> reprint(String key) {
+        PdfPrinterController printer;
+        synchronized (this) {
+            if (orderCache == null) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (pdfPrinter == null) {
+                // Stopped, this printer is released by the next start or stop
+                pdfPrinter = new PdfPrinterController(message, orderCache);
+            }
+            printer = pdfPrinter;
+        }
+        return printer.reprint(key);
+    }
+
+    private OrderCacheController createOrderCache(ConfigurationSnapshot config) {
+        OrderCacheController cache = new OrderCacheController(message,
+                Paths.get(localDirectory()),
+                config.getInt("cache_max_mb", 100) * 1024L * 1024L,
+                TimeUnit.HOURS.toMillis(config.getInt("cache_ttl_hours", 24)),
+                config.getInt("cache_memory_mb", 32) * 1024L * 1024L);
+        cache.load();
+        return cache;
+    }
+
+    /**
+     * @return the folder of the orders downloaded in "file" mode and of the cached orders.
+     */
+    private static String localDirectory() {
+        return System.getProperty("java.io.tmpdir") + "pdf";
+    }
+
+    private boolean isFolderConfigValid(OrderSource source) {
+        return Files.isDirectory(Paths.get(source.getDirectory()));
+    }
+
+    private boolean isFtpConfigValid(OrderSource source) {
+        String ftpServer = source.getServer();
+        String ftpUsername = source.getUsername();
+        String ftpPassword = source.getPassword() != null ? CryptoUtil.decrypt(source.getPassword()) : null;
+
+        return ftpServer != null &&
+                ftpUsername != null &&
+                ftpPassword != null;
+    }
+}
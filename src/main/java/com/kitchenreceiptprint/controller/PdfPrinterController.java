@@ -1,18 +1,64 @@
 package com.kitchenreceiptprint.controller;
 
+import com.kitchenreceiptprint.model.ConfigurationSnapshot;
 import com.kitchenreceiptprint.model.DatabaseModel;
+import com.kitchenreceiptprint.model.OrderPriority;
+import com.kitchenreceiptprint.model.OrderRouter;
+import com.kitchenreceiptprint.model.RenderedOrder;
+import com.kitchenreceiptprint.util.EscPosUtil;
 import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MemoryBudgetUtil;
 import com.kitchenreceiptprint.util.MessageUtil;
+import com.kitchenreceiptprint.util.MetricsUtil;
+import com.kitchenreceiptprint.util.PdfUtil;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessStreamCache;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.printing.PDFPageable;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import javax.print.DocFlavor;
+import javax.print.DocPrintJob;
+import javax.print.PrintException;
 import javax.print.PrintService;
-import javax.print.PrintServiceLookup;
+import javax.print.SimpleDoc;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.print.PageFormat;
+import java.awt.print.Pageable;
+import java.awt.print.Paper;
+import java.awt.print.Printable;
 import java.awt.print.PrinterJob;
 import java.awt.print.PrinterException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * Class PdfPrinterController
@@ -22,10 +68,26 @@ import java.util.List;
  * documents and uses the Java Print Service API to interact with the configured printers.
  *
  * Responsibilities:
- * - Load PDF documents from the specified file path.
+ * - Load PDF documents from the specified file path or from an in-memory buffer.
  * - Retrieve configured printer names from the application's database.
- * - Find matching print services for the configured printers.
- * - Print the PDF document to each of the configured printers.
+ * - Find matching print services for the configured printers through the PrinterRegistryController.
+ * - Render the pages of each order once, at the resolution of the printers (print_dpi, 203 dpi by
+ *   default as for most thermal printers), and hand the same images to every printer.
+ * - Print the order to all the configured printers at the same time, each printer having
+ *   its own worker and job queue. The jobs waiting for a printer go by virtual deadline, see
+ *   OrderPriority, so an urgent order overtakes the backlog of a slow printer.
+ * - Apply the routing rules before rendering, so each printer only receives the pages meant for it.
+ * - Send the order as raw ESC/POS raster commands to the printers listed in escpos_printers,
+ *   bypassing their driver, and to the network or device targets listed in escpos_targets.
+ * - Load the documents under a memory budget (pdf_memory_budget): each document reserves an
+ *   estimate of its heap use before loading and waits while the budget is spent, and the streams
+ *   it decodes beyond its reservation spill to scratch files.
+ * - Hand the rendered pages of every order to the OrderCacheController, and reprint a cached order
+ *   on request from its rendered pages, or from its cached PDF once they were dropped.
+ * - Record every successful print in the order journal and skip the printers that already printed
+ *   an order, so an order interrupted by a crash is only printed where it is missing.
+ * - Record the configured printers that are not installed as handled, as the printers that get no
+ *   page of the order, so a missing printer never keeps an order on the server.
  *
  * Usage:
  * This class is designed to be used whenever there is a need to print a PDF document to one or
@@ -39,49 +101,508 @@ import java.util.List;
  * Notes:
  * - The class assumes that the printers are properly configured in the system and accessible via
  *   the Java Print Service API.
+ * - A jammed or offline printer only delays its own queue, the other printers keep printing.
+ * - The PDF is parsed and rasterized on the calling thread, the printer jobs only send the images.
+ *   The memory reservation of a document is released once it is rendered, the images are bounded
+ *   by the pipeline queues.
+ *   Rendered orders are cached by order and resolution until every printer has handled them.
  * - Error handling is in place to manage issues related to PDF loading, printer configuration errors,
  *   or printing errors.
  */
 public class PdfPrinterController {
     private final DatabaseModel model;
     private final MessageUtil messageUtil;
+    private static final int DEFAULT_DPI = 203;
+    private static final int DEFAULT_ESCPOS_WIDTH = 576;
+    // 80 mm, the width of a kitchen ticket, in points
+    private static final float WARM_UP_PAGE_WIDTH = 226;
+    // Share of the heap given to the documents when pdf_memory_budget is not set
+    private static final int DEFAULT_BUDGET_HEAP_PERCENT = 25;
+    private static final int DEFAULT_MEMORY_FACTOR = 4;
+    // The renderer and the images of a page need about that much, even for a small ticket
+    private static final long MIN_DOCUMENT_BYTES = 1024 * 1024;
+
+    private final Map<String, ExecutorService> printerQueues = new ConcurrentHashMap<>();
+    private final Map<String, RenderedOrder> renderedOrders = new ConcurrentHashMap<>();
+    // Keeps the jobs of the same deadline in submission order
+    private final AtomicLong jobSequence = new AtomicLong();
+    private final MemoryBudgetUtil memoryBudget;
+    // Null when the orders are not cached
+    private final OrderCacheController orderCache;
+
+    @FunctionalInterface
+    private interface DocumentLoader {
+        PDDocument load(RandomAccessStreamCache.StreamCacheCreateFunction streamCache) throws IOException;
+    }
+
+    private static final class PrintJob implements Runnable, Comparable<PrintJob> {
+        private final long deadline;
+        private final long sequence;
+        private final Runnable task;
+
+        private PrintJob(long deadline, long sequence, Runnable task) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PrintJob other) {
+            int byDeadline = Long.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+
     public PdfPrinterController(MessageUtil messageUtil) {
+        this(messageUtil, null);
+    }
+
+    /**
+     * @param orderCache cache receiving the rendered pages of the printed orders, or null.
+     */
+    public PdfPrinterController(MessageUtil messageUtil, OrderCacheController orderCache) {
         this.messageUtil = messageUtil;
+        this.orderCache = orderCache;
         this.model = DatabaseModel.getInstance();
+        this.memoryBudget = new MemoryBudgetUtil(memoryBudgetBytes(model.getSnapshot()));
+    }
+
+    /**
+     * Print a PDF file on every configured printer.
+     *
+     * @return a future completed once every printer has handled the document, with true if every
+     * printer printed it.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String filePath) {
+        return printPdfMultiplePrinters(new File(filePath).getName(), new File(filePath));
+    }
+
+    /**
+     * Print a PDF file on every configured printer, recorded in the journal under the given name.
+     *
+     * @param fileName name of the order, used for messages and the journal.
+     * @param file     the PDF document.
+     * @return a future completed once every printer has handled the document, with true if every
+     * printer printed it.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String fileName, File file) {
+        return printPdfMultiplePrinters(fileName, file, OrderPriority.now());
+    }
+
+    /**
+     * Print a PDF file on every configured printer, ahead of the jobs with a later deadline.
+     *
+     * @param deadline virtual deadline of the order, see OrderPriority.deadline.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String fileName, File file, long deadline) {
+        return printPdfMultiplePrinters(fileName, file, priority -> deadline);
+    }
+
+    /**
+     * Print a PDF file on every configured printer, ahead of the jobs with a later deadline.
+     *
+     * @param deadline virtual deadline of the order given the Priority entry of its metadata, null
+     *                 when it has none. The entry is read by the load that renders the order.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String fileName, File file, ToLongFunction<String> deadline) {
+        return printDocumentMultiplePrinters(fileName, file.length(), streamCache -> Loader.loadPDF(file, streamCache),
+                deadline, false);
+    }
+
+    /**
+     * Print a PDF document held in memory, e.g. streamed directly from the FTP server.
+     *
+     * @param fileName name of the order, used for messages and the journal.
+     * @param content  raw bytes of the PDF document.
+     * @return a future completed once every printer has handled the document, with true if every
+     * printer printed it.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String fileName, byte[] content) {
+        return printPdfMultiplePrinters(fileName, content, OrderPriority.now());
+    }
+
+    /**
+     * Print a PDF document held in memory, ahead of the jobs with a later deadline.
+     *
+     * @param deadline virtual deadline of the order, see OrderPriority.deadline.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String fileName, byte[] content, long deadline) {
+        return printPdfMultiplePrinters(fileName, content, priority -> deadline);
+    }
+
+    /**
+     * Print a PDF document held in memory, ahead of the jobs with a later deadline.
+     *
+     * @param deadline virtual deadline of the order given the Priority entry of its metadata, null
+     *                 when it has none. The entry is read by the load that renders the order.
+     */
+    public CompletableFuture<Boolean> printPdfMultiplePrinters(String fileName, byte[] content,
+                                                               ToLongFunction<String> deadline) {
+        return printDocumentMultiplePrinters(fileName, content.length,
+                streamCache -> Loader.loadPDF(new RandomAccessReadBuffer(content), streamCache), deadline, false);
+    }
+
+    /**
+     * Print a cached order again on every configured printer, including the ones that already
+     * printed it, ahead of the waiting orders. Nothing is read from the server: the rendered pages
+     * are used when still in memory, the cached PDF otherwise.
+     *
+     * @param fileName key of the order in the journal and in the cache.
+     * @return a future completed once every printer has handled the document, with true if every
+     * printer printed it.
+     */
+    public CompletableFuture<Boolean> reprint(String fileName) {
+        RenderedOrder cached = orderCache != null ? orderCache.getRendered(fileName) : null;
+        if (cached != null && !cached.hasEveryRoutedPage()) {
+            // Rendered for the printers that were missing it only, the other printers need the PDF
+            cached = null;
+        }
+        Path file = orderCache != null ? orderCache.getFile(fileName) : null;
+        if (cached == null && file == null) {
+            messageUtil.appendMessage("Commande absente du cache : " + fileName);
+            return CompletableFuture.completedFuture(false);
+        }
+        messageUtil.appendMessage("Réimpression de : " + fileName);
+        if (cached != null) {
+            // Rendered at its own resolution, the images are printed at their size whatever print_dpi is now
+            renderedOrders.putIfAbsent(fileName + "@" + model.getSnapshot().getInt("print_dpi", DEFAULT_DPI), cached);
+        }
+        long size = file != null ? file.toFile().length() : 0;
+        DocumentLoader loader = streamCache -> {
+            if (file == null) {
+                throw new IOException("Commande absente du cache : " + fileName);
+            }
+            return Loader.loadPDF(file.toFile(), streamCache);
+        };
+        // Asked by the operator for a jammed ticket, it goes before every waiting order
+        return printDocumentMultiplePrinters(fileName, size, loader, priority -> Long.MIN_VALUE, true);
+    }
+
+    /**
+     * Load the print services and the PDF rendering classes ahead of the first order, so that the
+     * first ticket does not pay for the printer lookup, the font mapping and the class loading.
+     */
+    public static void warmUp() {
+        PrinterRegistryController.getPrinterNames();
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(new PDRectangle(WARM_UP_PAGE_WIDTH, WARM_UP_PAGE_WIDTH));
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 10);
+                content.newLineAtOffset(10, WARM_UP_PAGE_WIDTH - 20);
+                content.showText("Kitchen Receipt Print");
+                content.endText();
+            }
+            new PDFRenderer(document).renderImageWithDPI(0, DEFAULT_DPI, ImageType.GRAY);
+        } catch (IOException e) {
+            ExceptionUtil.handleException(e);
+        }
+    }
+
+    /**
+     * Stop the printer workers. Jobs still waiting in the queues are discarded.
+     */
+    public void shutdown() {
+        for (ExecutorService queue : printerQueues.values()) {
+            queue.shutdownNow();
+        }
+        printerQueues.clear();
+    }
+
+    /**
+     * @param reprint true to print on every printer, even the ones that already printed the order.
+     */
+    private CompletableFuture<Boolean> printDocumentMultiplePrinters(String fileName, long size, DocumentLoader loader,
+                                                                     ToLongFunction<String> deadlineOf, boolean reprint) {
+        ConfigurationSnapshot config = model.getSnapshot();
+        List<String> printerNames = config.getPrinters();
+        Set<String> rawPrinters = new HashSet<>(config.getList("escpos_printers"));
+        Set<String> alreadyPrinted = reprint ? Set.of() : model.getPrintedPrinters(fileName);
+        Map<String, PrintService> targets = new LinkedHashMap<>();
+        List<String> rawTargets = new ArrayList<>();
+
+        for (String printerName : printerNames) {
+            if (alreadyPrinted.contains(printerName)) {
+                messageUtil.appendMessage("Déjà imprimé sur : " + printerName);
+                continue;
+            }
+            PrintService selectedService = PrinterRegistryController.findPrintService(printerName);
+            if (selectedService != null) {
+                targets.put(printerName, selectedService);
+            } else {
+                missingPrinter(fileName, printerName);
+            }
+        }
+        for (String target : config.getList("escpos_targets")) {
+            if (alreadyPrinted.contains(target)) {
+                messageUtil.appendMessage("Déjà imprimé sur : " + target);
+            } else {
+                rawTargets.add(target);
+            }
+        }
+        if (targets.isEmpty() && rawTargets.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        int dpi = config.getInt("print_dpi", DEFAULT_DPI);
+        String cacheKey = fileName + "@" + dpi;
+        RenderedOrder rendered;
+        try {
+            long memory = Math.max(MIN_DOCUMENT_BYTES, size * config.getInt("pdf_memory_factor", DEFAULT_MEMORY_FACTOR));
+            Set<String> printers = new HashSet<>(targets.keySet());
+            printers.addAll(rawTargets);
+            rendered = renderOnce(cacheKey, fileName, loader, memory, dpi, config.getRouter(), printers);
+        } catch (IOException e) {
+            messageUtil.appendMessage("Impossible de lire le PDF : " + fileName);
+            ExceptionUtil.handleException(e);
+            return CompletableFuture.completedFuture(false);
+        }
+        long deadline = deadlineOf.applyAsLong(rendered.getPriority());
+
+        // The ESC/POS commands are the same for every raw printer receiving the same pages, they are built once as well
+        int escPosWidth = config.getInt("escpos_width", DEFAULT_ESCPOS_WIDTH);
+        Map<List<Integer>, byte[]> escPosByPages = new HashMap<>();
+
+        List<CompletableFuture<Boolean>> jobs = new ArrayList<>();
+        for (Map.Entry<String, PrintService> target : targets.entrySet()) {
+            String printerName = target.getKey();
+            List<Integer> pages = rendered.getPagesFor(printerName);
+            if (pages.isEmpty()) {
+                skipPrinter(fileName, printerName);
+                continue;
+            }
+            RenderedOrder selected = rendered.select(pages);
+            byte[] raw = rawPrinters.contains(printerName)
+                    ? escPosByPages.computeIfAbsent(pages, key -> EscPosUtil.toEscPos(selected, escPosWidth))
+                    : null;
+            jobs.add(enqueue(printerName, deadline, () -> printOnPrinter(selected, raw, printerName, target.getValue())));
+        }
+        for (String target : rawTargets) {
+            List<Integer> pages = rendered.getPagesFor(target);
+            if (pages.isEmpty()) {
+                skipPrinter(fileName, target);
+                continue;
+            }
+            RenderedOrder selected = rendered.select(pages);
+            byte[] raw = escPosByPages.computeIfAbsent(pages, key -> EscPosUtil.toEscPos(selected, escPosWidth));
+            jobs.add(enqueue(target, deadline, () -> printOnPrinter(selected, raw, target, null)));
+        }
+
+        return CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((done, error) -> {
+                    // Also when a job failed, or the rendered pages would be held until the application exits
+                    renderedOrders.remove(cacheKey);
+                    if (orderCache != null) {
+                        // Kept even if a printer failed, that is when a reprint is needed
+                        orderCache.putRendered(fileName, rendered);
+                    }
+                })
+                .thenApply(done -> jobs.stream().allMatch(CompletableFuture::join));
+    }
+
+    /**
+     * Nothing of the order is meant for this printer, it is recorded as handled so it is not retried.
+     */
+    private void skipPrinter(String fileName, String printerName) {
+        messageUtil.appendMessage("Aucune page à imprimer sur : " + printerName);
+        model.journalPrinted(fileName, printerName);
     }
-    public void printPdfMultiplePrinters(String filePath) {
-        List<String> printerNames = model.getAllPrinter();
 
-        try (PDDocument document = Loader.loadPDF(new File(filePath))) {
-            PrintService[] printServices = PrintServiceLookup.lookupPrintServices(null, null);
+    /**
+     * The printer is not installed, the order is recorded as handled on it so it is still deleted
+     * once the other printers are done, instead of being downloaded again on every poll.
+     */
+    private void missingPrinter(String fileName, String printerName) {
+        messageUtil.appendMessage("Imprimante non trouvée, commande ignorée sur : " + printerName);
+        model.journalPrinted(fileName, printerName);
+    }
+
+    /**
+     * Route the pages of the order and rasterize the ones meant for at least one printer, unless
+     * the same order was already rendered at this resolution.
+     *
+     * @param memory   estimated heap use of the document, reserved from the budget while it is loaded.
+     * @param printers the printers and ESC/POS targets the order is printed on.
+     */
+    private RenderedOrder renderOnce(String cacheKey, String fileName, DocumentLoader loader, long memory, int dpi,
+                                     OrderRouter router, Set<String> printers) throws IOException {
+        RenderedOrder rendered = renderedOrders.get(cacheKey);
+        if (rendered != null) {
+            return rendered;
+        }
+
+        if (memoryBudget.wouldWait(memory)) {
+            messageUtil.appendMessage("Mémoire PDF saturée, commande en attente : " + fileName);
+        }
+        MemoryBudgetUtil.Permit permit;
+        try {
+            permit = memoryBudget.acquire(memory);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrompu avant le chargement de " + fileName);
+        }
+
+        long start = MetricsUtil.start();
+        boolean success = false;
+        // The streams decoded beyond the reservation go to scratch files instead of the heap
+        try (permit; PDDocument document = loader.load(MemoryUsageSetting.setupMixed(permit.getBytes()).streamCache)) {
+            int pageCount = document.getNumberOfPages();
+            List<Set<String>> routes = null;
+            if (!router.isEmpty()) {
+                // The rules are evaluated before rendering, the pages meant for none of the printers are never rasterized
+                PDFTextStripper stripper = router.needsText() ? new PDFTextStripper() : null;
+                routes = router.route(fileName, pageCount, pageIndex -> pageText(stripper, document, pageIndex));
+            }
 
-            for (String printerName : printerNames) {
-                PrintService selectedService = findPrintService(printerName, printServices);
-                if (selectedService != null) {
-                    printDocument(document, selectedService);
-                } else {
-                    messageUtil.appendMessage("Imprimante non trouvée : " + printerName);
-                }
+            PDFRenderer renderer = new PDFRenderer(document);
+            List<BufferedImage> pages = new ArrayList<>();
+            for (int i = 0; i < pageCount; i++) {
+                boolean routed = routes == null || routes.get(i) == null || !Collections.disjoint(routes.get(i), printers);
+                pages.add(routed ? renderer.renderImageWithDPI(i, dpi, ImageType.GRAY) : null);
             }
-        } catch (IOException | PrinterException e) {
+            // Read by this load rather than a second one, so the priority costs no extra parsing or memory
+            String priority = document.getDocumentInformation().getCustomMetadataValue(PdfUtil.PRIORITY_KEY);
+            rendered = new RenderedOrder(fileName, dpi, pages, routes, priority);
+            success = true;
+        } finally {
+            MetricsUtil.record(MetricsUtil.PDF_RENDER, start, success);
+        }
+        RenderedOrder previous = renderedOrders.putIfAbsent(cacheKey, rendered);
+        return previous != null ? previous : rendered;
+    }
+
+    /**
+     * @return pdf_memory_budget in megabytes, or a quarter of the maximum heap when it is not set.
+     */
+    private static long memoryBudgetBytes(ConfigurationSnapshot config) {
+        int budgetMegabytes = config.getInt("pdf_memory_budget", 0);
+        if (budgetMegabytes > 0) {
+            return budgetMegabytes * 1024L * 1024L;
+        }
+        return Runtime.getRuntime().maxMemory() / 100 * DEFAULT_BUDGET_HEAP_PERCENT;
+    }
+
+    private static String pageText(PDFTextStripper stripper, PDDocument document, int pageIndex) {
+        try {
+            stripper.setStartPage(pageIndex + 1);
+            stripper.setEndPage(pageIndex + 1);
+            return stripper.getText(document);
+        } catch (IOException e) {
             ExceptionUtil.handleException(e);
+            return "";
         }
     }
 
-    private PrintService findPrintService(String printerName, PrintService[] services) {
-        for (PrintService service : services) {
-            if (service.getName().equalsIgnoreCase(printerName)) {
-                return service;
+    /**
+     * Queue a job on the worker of a printer, the job with the earliest deadline runs first.
+     */
+    private CompletableFuture<Boolean> enqueue(String printerName, long deadline, Supplier<Boolean> job) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // execute, not submit: the queue orders PrintJob instances, a FutureTask is not comparable
+        printerQueue(printerName).execute(new PrintJob(deadline, jobSequence.incrementAndGet(), () -> {
+            try {
+                result.complete(job.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }));
+        return result;
+    }
+
+    private ExecutorService printerQueue(String printerName) {
+        return printerQueues.computeIfAbsent(printerName, name -> new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "printer-" + name);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Print an order on a printer, through its driver or as raw ESC/POS commands when escPos is set.
+     * A null service means that the printer is a direct ESC/POS target (network or device).
+     */
+    private boolean printOnPrinter(RenderedOrder rendered, byte[] escPos, String printerName, PrintService service) {
+        long start = MetricsUtil.start();
+        boolean success = false;
+        try {
+            if (service == null) {
+                EscPosUtil.send(printerName, escPos);
+                messageUtil.appendMessage("Imprimer avec succès sur : " + printerName);
+            } else if (escPos != null) {
+                DocPrintJob job = service.createPrintJob();
+                job.print(new SimpleDoc(escPos, DocFlavor.BYTE_ARRAY.AUTOSENSE, null), null);
+                messageUtil.appendMessage("Imprimer avec succès sur : " + service.getName());
+            } else {
+                printDocument(rendered, service);
             }
+            model.journalPrinted(rendered.getFileName(), printerName);
+            success = true;
+        } catch (PrinterException | PrintException | IOException e) {
+            messageUtil.appendMessage("Échec de l'impression sur : " + printerName);
+            ExceptionUtil.handleException(e);
+        } finally {
+            MetricsUtil.recordPrint(printerName, start, success);
         }
-        return null;
+        return success;
     }
 
-    private void printDocument(PDDocument document, PrintService service) throws PrinterException {
+    private void printDocument(RenderedOrder rendered, PrintService service) throws PrinterException {
         PrinterJob job = PrinterJob.getPrinterJob();
         job.setPrintService(service);
-        job.setPageable(new PDFPageable(document));
+        job.setJobName(rendered.getFileName());
+        job.setPageable(new RenderedPageable(rendered));
         job.print();
-        messageUtil.appendMessage("Imprimer avec succès");
+        messageUtil.appendMessage("Imprimer avec succès sur : " + service.getName());
+    }
+
+    /**
+     * Prints the pre-rendered images of an order, one image per page, at the size of the PDF page.
+     */
+    private static final class RenderedPageable implements Pageable, Printable {
+        private final RenderedOrder rendered;
+
+        private RenderedPageable(RenderedOrder rendered) {
+            this.rendered = rendered;
+        }
+
+        @Override
+        public int getNumberOfPages() {
+            return rendered.getPageCount();
+        }
+
+        @Override
+        public PageFormat getPageFormat(int pageIndex) {
+            Paper paper = new Paper();
+            paper.setSize(rendered.getPageWidth(pageIndex), rendered.getPageHeight(pageIndex));
+            paper.setImageableArea(0, 0, paper.getWidth(), paper.getHeight());
+            PageFormat format = new PageFormat();
+            format.setPaper(paper);
+            return format;
+        }
+
+        @Override
+        public Printable getPrintable(int pageIndex) {
+            return this;
+        }
+
+        @Override
+        public int print(Graphics graphics, PageFormat pageFormat, int pageIndex) {
+            if (pageIndex >= rendered.getPageCount()) {
+                return NO_SUCH_PAGE;
+            }
+            Graphics2D g2 = (Graphics2D) graphics;
+            g2.translate(pageFormat.getImageableX(), pageFormat.getImageableY());
+            g2.drawImage(rendered.getPage(pageIndex), 0, 0,
+                    (int) Math.round(rendered.getPageWidth(pageIndex)),
+                    (int) Math.round(rendered.getPageHeight(pageIndex)), null);
+            return PAGE_EXISTS;
+        }
     }
 }
@@ -1,22 +1,31 @@
 package com.kitchenreceiptprint.controller;
 
+import com.kitchenreceiptprint.util.ExceptionUtil;
+import com.kitchenreceiptprint.util.MessageUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * Class PeriodicTaskRunnerController
  *
  * Manages the scheduling and execution of periodic tasks within the Kitchen Receipt Printing application.
- * Utilizes a single-threaded ScheduledExecutorService to manage task execution at fixed intervals.
- * Provides functionality to start, pause, resume, and kill the scheduled task, ensuring that tasks
- * can be managed dynamically at runtime.
+ * Every task is identified by a name, one per source of orders, and runs on its own single-threaded
+ * ScheduledExecutorService with an adaptive delay between two runs: the task
+ * is run again quickly, down to a minimum interval, while it keeps finding work, and the delay doubles
+ * up to a maximum interval while it finds nothing. Provides functionality to start, pause, resume, and
+ * kill the scheduled task, ensuring that tasks can be managed dynamically at runtime.
  *
  * Responsibilities:
- * - Schedule and execute a given Runnable task at a specified interval.
- * - Provide control over the task execution, allowing it to be paused, resumed, or stopped.
- * - Track the execution state of the task to allow for querying its status.
+ * - Schedule and execute a given task with an adaptive delay between a minimum and a maximum interval.
+ * - Log every scheduling decision, the UI log only keeping the latest decision of each task.
+ * - Provide control over the execution of all the tasks, allowing them to be paused, resumed, or stopped.
+ * - Track the execution state of the tasks to allow for querying their status.
  *
  * Usage:
  * This class is utilized by components that require periodic task execution, such as periodic checks
@@ -28,64 +37,164 @@ import java.util.concurrent.TimeUnit;
  * Last Modification: 05/02/2024
  *
  * Notes:
- * - The class ensures that only one instance of the task is running at any given time by cancelling
- *   any previous instance before scheduling a new one.
- * - It provides a mechanism to safely stop the task execution, clearing any references to the runnable
+ * - The class ensures that only one instance of a task is running at any given time by cancelling
+ *   any previous task of the same name before scheduling a new one.
+ * - Each task has its own thread, so a task blocked on an unreachable server never delays the others.
+ * - The next run is only scheduled once the current one has finished, so runs never overlap and a slow
+ *   run is never followed by a burst of catch-up runs.
+ * - It provides a mechanism to safely stop the task execution, clearing any references to the
  *   task and the ScheduledFuture to prevent memory leaks.
  */
 public class PeriodicTaskRunnerController {
-    private static final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    private static final Map<String, ScheduledTask> tasks = new LinkedHashMap<>();
+    private static final String POLL_STATUS = "poll:";
+
+    private static final class ScheduledTask {
+        private final String name;
+        private final ScheduledExecutorService executor;
+        private final BooleanSupplier task;
+        private final MessageUtil messageUtil;
+        private final int minInterval;
+        private final int maxInterval;
+
+        private ScheduledFuture<?> futureTask = null;
+
+        private int currentDelay;
+
+        // Incremented on every (re)start, a run only schedules the next one if it belongs to the current generation
+        private long generation = 0;
+
+        private volatile boolean isRunning = false;
+
+        private ScheduledTask(String name, BooleanSupplier task, int minInterval, int maxInterval, MessageUtil messageUtil) {
+            this.name = name;
+            this.task = task;
+            this.messageUtil = messageUtil;
+            this.maxInterval = Math.max(1, maxInterval);
+            this.minInterval = Math.max(1, Math.min(minInterval, this.maxInterval));
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "poll-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
 
-    private static ScheduledFuture<?> futureTask = null;
+        private void start() {
+            long runGeneration = ++generation;
+            currentDelay = minInterval;
+            futureTask = executor.schedule(() -> run(runGeneration), 0, TimeUnit.SECONDS);
+        }
 
-    private static Runnable currentTask = null;
+        private void pause() {
+            if (futureTask != null) {
+                futureTask.cancel(false); // N'interrompt pas la tâche si elle est en cours d'exécution
+                generation++;
+                isRunning = false;
+            }
+        }
 
-    private static int currentInterval;
+        private void resume() {
+            if (futureTask == null || futureTask.isCancelled()) {
+                start();
+            }
+        }
 
-    private static volatile boolean isRunning = false;
+        private void kill() {
+            generation++;
+            executor.shutdownNow();
+            futureTask = null;
+            isRunning = false;
+        }
 
-    static boolean messageDisplayed = false;
+        private void run(long runGeneration) {
+            synchronized (PeriodicTaskRunnerController.class) {
+                if (runGeneration != generation) {
+                    return;
+                }
+            }
 
-    public static void task(Runnable originalTask, int intervalInSeconds) {
-        currentTask = () -> {
             isRunning = true;
-            originalTask.run();
-        };
-
-        currentInterval = intervalInSeconds;
-
-        if (futureTask != null && !futureTask.isCancelled()) {
-            futureTask.cancel(true); // Annule la tâche précédente si elle est encore en cours
+            boolean foundWork = false;
+            try {
+                foundWork = task.getAsBoolean();
+            } catch (Exception e) {
+                ExceptionUtil.handleException(e);
+            }
+
+            synchronized (PeriodicTaskRunnerController.class) {
+                if (runGeneration != generation) {
+                    return;
+                }
+                int previousDelay = currentDelay;
+                currentDelay = foundWork ? minInterval : Math.min(currentDelay * 2, maxInterval);
+                futureTask = executor.schedule(() -> run(runGeneration), currentDelay, TimeUnit.SECONDS);
+
+                // The name is only worth logging when several sources are polled
+                String label = tasks.size() > 1 ? name + " : " : "";
+                // Every decision is logged, the window only keeps the latest one of each source
+                String decision;
+                if (currentDelay == previousDelay) {
+                    decision = (foundWork ? "Commandes reçues" : "Aucune commande") + ", prochaine vérification dans ";
+                } else {
+                    decision = foundWork ? "Commandes reçues, intervalle ramené à " : "Aucune commande, intervalle porté à ";
+                }
+                messageUtil.appendStatus(POLL_STATUS + name, label + decision + currentDelay + " s");
+            }
         }
+    }
 
-        futureTask = executor.scheduleAtFixedRate(currentTask, 0, intervalInSeconds, TimeUnit.SECONDS);
+    /**
+     * Run a task with an adaptive delay, replacing the task of the same name if there is one.
+     *
+     * @param name                 name of the task, e.g. the source of orders it polls.
+     * @param originalTask         the task, returning true when it found work to do.
+     * @param minIntervalInSeconds delay used while the task keeps finding work.
+     * @param maxIntervalInSeconds upper bound of the delay while the task is idle.
+     * @param message              where the scheduling decisions are logged.
+     */
+    public static synchronized void task(String name, BooleanSupplier originalTask, int minIntervalInSeconds,
+                                         int maxIntervalInSeconds, MessageUtil message) {
+        ScheduledTask previous = tasks.remove(name);
+        if (previous != null) {
+            previous.kill(); // Annule la tâche précédente si elle est encore en cours
+        }
 
+        ScheduledTask scheduled = new ScheduledTask(name, originalTask, minIntervalInSeconds, maxIntervalInSeconds, message);
+        tasks.put(name, scheduled);
+        scheduled.start();
     }
 
-    public static void pause() {
-        if (futureTask != null) {
-            futureTask.cancel(false); // N'interrompt pas la tâche si elle est en cours d'exécution
-            isRunning = false;
+    public static synchronized void pause() {
+        for (ScheduledTask scheduled : tasks.values()) {
+            scheduled.pause();
         }
     }
 
-    public static void resume() {
-        if (currentTask != null && (futureTask == null || futureTask.isCancelled())) {
-            futureTask = executor.scheduleAtFixedRate(currentTask, 0, currentInterval, TimeUnit.SECONDS);
+    public static synchronized void resume() {
+        for (ScheduledTask scheduled : tasks.values()) {
+            scheduled.resume();
         }
     }
 
-    public static void killTask() {
-        if (futureTask != null) {
-            futureTask.cancel(true);
-            futureTask = null;
-            currentTask = null;
-            isRunning = false;
+    public static synchronized void killTask() {
+        if (!tasks.isEmpty()) {
+            for (ScheduledTask scheduled : tasks.values()) {
+                scheduled.kill();
+            }
+            tasks.clear();
             System.out.println("Tâche tuée et réinitialisée");
         }
     }
 
-    public static boolean isTaskRunning() {
-        return isRunning;
+    /**
+     * @return true if at least one task is running.
+     */
+    public static synchronized boolean isTaskRunning() {
+        for (ScheduledTask scheduled : tasks.values()) {
+            if (scheduled.isRunning) {
+                return true;
+            }
+        }
+        return false;
     }
 }
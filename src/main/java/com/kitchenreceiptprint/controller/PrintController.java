@@ -1,7 +1,5 @@
 package com.kitchenreceiptprint.controller;
 
-import javax.print.PrintService;
-import javax.print.PrintServiceLookup;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
@@ -25,6 +23,7 @@ import javafx.collections.ObservableList;
  * Last Modification: 05/02/2024
  *
  * Notes:
+ * - The printer names come from the PrinterRegistryController cache instead of a new PrintServiceLookup call.
  * - This class does not handle the actual printing of documents but rather assists in the selection of printers
  *   by listing their names.
  * - It uses the JavaFX collections library to return an ObservableList<String>, making it suitable for data binding
@@ -32,13 +31,6 @@ import javafx.collections.ObservableList;
  */
 public class PrintController {
     public static ObservableList<String> getPrinters() {
-        ObservableList<String> printerNames = FXCollections.observableArrayList();
-        PrintService[] printServices = PrintServiceLookup.lookupPrintServices(null, null);
-
-        for (PrintService printer : printServices) {
-            printerNames.add(printer.getName());
-        }
-
-        return printerNames;
+        return FXCollections.observableArrayList(PrinterRegistryController.getPrinterNames());
     }
 }
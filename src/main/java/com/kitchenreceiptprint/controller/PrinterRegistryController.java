@@ -0,0 +1,123 @@
+package com.kitchenreceiptprint.controller;
+
+import com.kitchenreceiptprint.util.ExceptionUtil;
+
+import javax.print.PrintService;
+import javax.print.PrintServiceLookup;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class PrinterRegistryController
+ *
+ * Keeps the print services of the system in memory so that the print path never has to call
+ * PrintServiceLookup, which can take hundreds of milliseconds on some systems (e.g. Linux/CUPS).
+ * The registry is refreshed in the background at a fixed interval and on demand when a printer
+ * cannot be found.
+ *
+ * Responsibilities:
+ * - Resolve a printer name to its PrintService in constant time.
+ * - List the names of the available printers.
+ * - Refresh the known print services periodically and after a lookup failure.
+ *
+ * Usage:
+ * This class is used statically by PdfPrinterController to find the print service of each
+ * configured printer, and by PrintController to list the printers in the configuration screen.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ *
+ * Notes:
+ * - Printer names are matched case-insensitively, as PrintService names were compared before.
+ * - Refreshes triggered by a lookup failure are rate limited so an unknown printer does not cause
+ *   a PrintServiceLookup call for every order.
+ */
+public class PrinterRegistryController {
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+    private static final long MIN_REFRESH_DELAY_MILLIS = 5000;
+
+    private static volatile Map<String, PrintService> services;
+    private static volatile List<String> printerNames = Collections.emptyList();
+    private static volatile long lastRefresh;
+    private static ScheduledExecutorService refresher;
+
+    /**
+     * Find the print service of a printer.
+     *
+     * @return the print service, or null if no printer has this name.
+     */
+    public static PrintService findPrintService(String printerName) {
+        String key = printerName.toLowerCase(Locale.ROOT);
+        PrintService service = registry().get(key);
+        if (service == null && System.currentTimeMillis() - lastRefresh >= MIN_REFRESH_DELAY_MILLIS) {
+            refresh();
+            service = services.get(key);
+        }
+        return service;
+    }
+
+    /**
+     * Get the names of all the printers of the system
+     *
+     * @return List<String>.
+     */
+    public static List<String> getPrinterNames() {
+        registry();
+        return printerNames;
+    }
+
+    /**
+     * Query the print services of the system and swap them in the registry.
+     */
+    public static synchronized void refresh() {
+        PrintService[] printServices = PrintServiceLookup.lookupPrintServices(null, null);
+        Map<String, PrintService> lookup = new HashMap<>();
+        List<String> names = new ArrayList<>();
+
+        for (PrintService service : printServices) {
+            lookup.putIfAbsent(service.getName().toLowerCase(Locale.ROOT), service);
+            names.add(service.getName());
+        }
+
+        printerNames = Collections.unmodifiableList(names);
+        services = Collections.unmodifiableMap(lookup);
+        lastRefresh = System.currentTimeMillis();
+    }
+
+    private static Map<String, PrintService> registry() {
+        Map<String, PrintService> current = services;
+        if (current == null) {
+            synchronized (PrinterRegistryController.class) {
+                if (services == null) {
+                    refresh();
+                    startBackgroundRefresh();
+                }
+                current = services;
+            }
+        }
+        return current;
+    }
+
+    private static void startBackgroundRefresh() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "printer-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                ExceptionUtil.handleException(e);
+            }
+        }, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+}
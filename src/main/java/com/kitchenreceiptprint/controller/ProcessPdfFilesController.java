@@ -1,5 +1,7 @@
 package com.kitchenreceiptprint.controller;
 
+import com.kitchenreceiptprint.model.OrderRef;
+import com.kitchenreceiptprint.model.OrderSource;
 import com.kitchenreceiptprint.util.ExceptionUtil;
 import com.kitchenreceiptprint.util.MessageUtil;
 
@@ -9,15 +11,13 @@ import java.util.List;
  * Class ProcessPdfFilesController
  *
  * Facilitates the processing of PDF files retrieved from an FTP server, including downloading,
- * printing, and deleting the files. This class acts as a coordinator between the FTP downloader,
- * message utility, and PDF printer components to execute a series of operations on PDF files
- * specified by certain criteria (e.g., file naming convention).
+ * printing, and deleting the files. This class is the discovery stage of the order pipeline: it
+ * lists the orders on the FTP server and hands the new ones over to the OrderPipelineController,
+ * which downloads, prints and deletes them concurrently.
  *
  * Responsibilities:
- * - Retrieve a list of PDF files from an FTP server based on predefined criteria.
- * - Download the listed PDF files to a local directory for processing.
- * - Print each downloaded PDF file to configured printers.
- * - Delete the PDF files from the FTP server after successful processing.
+ * - Retrieve the list of PDF files of the pipeline's source, from its remote directory and with its file prefix.
+ * - Submit each listed PDF file to the order pipeline, most urgent first (see OrderPriority), then oldest first.
  *
  * Usage:
  * This static method is intended to be called when there's a need to automatically process PDF files
@@ -29,33 +29,34 @@ import java.util.List;
  *
  * Notes:
  * - This class is designed for use in environments where PDF files are regularly received via FTP for processing.
- * - Utilizes the `FtpDownloaderController` for FTP operations, `MessageUtil` for logging, and `PdfPrinterController`
- *   for printing functionality.
+ * - Submitting blocks while the pipeline is full, so a printer falling behind also slows down the discovery.
+ * - Utilizes the `FtpDownloaderController` for FTP operations, `MessageUtil` for logging, and `OrderPipelineController`
+ *   for downloading, printing and deleting the orders.
  */
 public class ProcessPdfFilesController {
 
     public static boolean processPdfFiles(FtpDownloaderController ftpDownloader,
                                        MessageUtil message,
-                                       PdfPrinterController PdfPrinter,
-                                       String ftp_server,
-                                       String ftp_username,
-                                       String ftp_password,
-                                       String directoryPath) {
+                                       OrderPipelineController pipeline) {
         try {
-            List<String> pdfFiles = ftpDownloader.getLatestPdfListFromFtp("/", "order", ftp_server, ftp_username, ftp_password);
+            OrderSource source = pipeline.getSource();
+            List<OrderRef> pdfFiles = ftpDownloader.getLatestPdfListFromFtp(source.getDirectory(), source.getPrefix());
 
             if (pdfFiles == null || pdfFiles.isEmpty()) {
                 return false;
             }
 
-            for (String pdfFile : pdfFiles) {
-                message.appendMessage("Traitement du fichier : " + pdfFile);
-                ftpDownloader.downloadPdfFile(ftp_server, ftp_username, ftp_password, "/", pdfFile, directoryPath);
-                PdfPrinter.printPdfMultiplePrinters(directoryPath + "/" + pdfFile);
-                ftpDownloader.deletePdfFile(ftp_server, ftp_username, ftp_password, "/", pdfFile);
+            // Most urgent first, submitting blocks while the pipeline is full
+            pdfFiles.sort(pipeline.getSubmissionOrder());
+            boolean submitted = false;
+            for (OrderRef pdfFile : pdfFiles) {
+                submitted |= pipeline.submit(pdfFile);
             }
-            return true;
+            return submitted;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             ExceptionUtil.handleException(e);
             return false;
@@ -0,0 +1,130 @@
+package com.kitchenreceiptprint.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class ConfigurationSnapshot
+ *
+ * Immutable copy of the configuration, printers, sources and routing_rules tables. A snapshot is loaded once by the
+ * DatabaseModel and replaced as a whole after each write, so readers never query H2 and always
+ * see a consistent set of values.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class ConfigurationSnapshot {
+    static final ConfigurationSnapshot EMPTY = new ConfigurationSnapshot(Map.of(), List.of(), List.of(), List.of());
+
+    private final Map<String, String> values;
+    private final List<String> printers;
+    private final List<OrderSource> sources;
+    private final List<RoutingRule> routingRules;
+    private final OrderRouter router;
+    private final OrderPriority priorities;
+
+    ConfigurationSnapshot(Map<String, String> values, List<String> printers, List<OrderSource> sources,
+                          List<RoutingRule> routingRules) {
+        this.values = Collections.unmodifiableMap(values);
+        this.printers = Collections.unmodifiableList(printers);
+        this.sources = Collections.unmodifiableList(sources);
+        this.routingRules = Collections.unmodifiableList(routingRules);
+        // Compiled here so the patterns are built once per configuration change, not per order
+        this.router = routingRules.isEmpty() ? OrderRouter.NONE : new OrderRouter(routingRules, getList("routing_fallback"));
+        this.priorities = new OrderPriority(
+                values.containsKey("priority_tags") ? getList("priority_tags") : OrderPriority.DEFAULT_TAGS,
+                getInt("priority_default", OrderPriority.DEFAULT_LEVEL),
+                getInt("priority_aging", OrderPriority.DEFAULT_AGING_SECONDS));
+    }
+
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * Get a numeric configuration value
+     *
+     * @return the value, or defaultValue if it is missing or not a number.
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a comma-separated configuration value
+     *
+     * @return the trimmed, non-empty entries, or an empty list if the value is missing.
+     */
+    public List<String> getList(String name) {
+        String value = values.get(name);
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        List<String> entries = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (!entry.isBlank()) {
+                entries.add(entry.trim());
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    public String getFtpServer() {
+        return values.get("ftp_server");
+    }
+
+    public String getFtpUsername() {
+        return values.get("ftp_username");
+    }
+
+    /**
+     * @return the FTP password as stored in the database, i.e. encrypted.
+     */
+    public String getFtpPassword() {
+        return values.get("ftp_password");
+    }
+
+    public int getInterval() {
+        return getInt("interval", 60);
+    }
+
+    public List<String> getPrinters() {
+        return printers;
+    }
+
+    /**
+     * @return every source of orders, enabled or not, the default one first.
+     */
+    public List<OrderSource> getSources() {
+        return sources;
+    }
+
+    public List<RoutingRule> getRoutingRules() {
+        return routingRules;
+    }
+
+    /**
+     * @return the routing rules compiled into a matcher.
+     */
+    public OrderRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * @return the priority levels of the orders and their scheduling order.
+     */
+    public OrderPriority getPriorities() {
+        return priorities;
+    }
+}
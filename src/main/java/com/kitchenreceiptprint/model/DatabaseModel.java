@@ -2,25 +2,43 @@ package com.kitchenreceiptprint.model;
 
 import com.kitchenreceiptprint.util.ExceptionUtil;
 
+import org.h2.jdbcx.JdbcConnectionPool;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DatabaseModel {
     // Volatile variable to ensure visibility of changes across threads.
     private static volatile DatabaseModel instance;
-    private static final String DB = "jdbc:h2:~/kitchenreceiptprint";
+    // Can be overridden, e.g. to point the benchmarks to a scratch database
+    private static final String DB = System.getProperty("kitchenreceiptprint.db", "jdbc:h2:~/kitchenreceiptprint");
     private static final String USER = "krp";
     private static final String PASS = "1234";
-    private Connection connection;
+    private static final int MAX_CONNECTIONS = 4;
+    private static final int JOURNAL_RETENTION_DAYS = 7;
+    // Pooled connections keep the embedded database open instead of reopening the file for every query.
+    private final JdbcConnectionPool pool;
+    // Immutable view of the configuration, swapped as a whole after every write.
+    private volatile ConfigurationSnapshot snapshot;
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run(Connection conn) throws SQLException;
+    }
 
     private DatabaseModel() {
         // Private constructor to prevent direct instantiation.
-        // Initialize the database connection or other resources here.
+        pool = JdbcConnectionPool.create(DB, USER, PASS);
+        pool.setMaxConnections(MAX_CONNECTIONS);
     }
 
     // Double-checked locking to ensure only one instance is created.
@@ -36,86 +54,268 @@ public class DatabaseModel {
     }
 
     private static Connection getConnection() throws SQLException {
-        if (instance.connection == null || instance.connection.isClosed()) {
-            return DriverManager.getConnection(DB, USER, PASS);
-        }
-        return instance.connection;
+        return getInstance().pool.getConnection();
     }
 
     public void closeConnection() {
-        if (connection != null) {
+        pool.dispose();
+    }
+
+    /**
+     * Run several statements in a single transaction, rolled back if one of them fails.
+     */
+    private static void inTransaction(SqlWork work) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
             try {
-                connection.close();
+                work.run(conn);
+                conn.commit();
             } catch (SQLException e) {
-                ExceptionUtil.handleException(e);
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         }
     }
 
     public static void createDatabase() {
-        String sql = "CREATE TABLE IF NOT EXISTS configuration (" +
-                "id_configuration INT AUTO_INCREMENT PRIMARY KEY, " +
-                "name VARCHAR(255) NOT NULL UNIQUE, " +
-                "\"value\" VARCHAR(255) NOT NULL);" +
-                "CREATE TABLE IF NOT EXISTS printers (" +
-                "id_printer INT AUTO_INCREMENT PRIMARY KEY, " +
-                "name VARCHAR(255) NOT NULL);";
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.executeUpdate();
+        try {
+            inTransaction(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.addBatch("CREATE TABLE IF NOT EXISTS configuration (" +
+                            "id_configuration INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "name VARCHAR(255) NOT NULL UNIQUE, " +
+                            "\"value\" VARCHAR(255) NOT NULL)");
+                    stmt.addBatch("CREATE TABLE IF NOT EXISTS printers (" +
+                            "id_printer INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "name VARCHAR(255) NOT NULL)");
+                    stmt.addBatch("CREATE TABLE IF NOT EXISTS orders (" +
+                            "id_order INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "file_name VARCHAR(255) NOT NULL UNIQUE, " +
+                            "state VARCHAR(20) NOT NULL, " +
+                            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+                    stmt.addBatch("CREATE INDEX IF NOT EXISTS idx_orders_state ON orders (state)");
+                    stmt.addBatch("CREATE TABLE IF NOT EXISTS order_prints (" +
+                            "id_order INT NOT NULL, " +
+                            "printer VARCHAR(255) NOT NULL, " +
+                            "printed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL, " +
+                            "PRIMARY KEY (id_order, printer), " +
+                            "FOREIGN KEY (id_order) REFERENCES orders (id_order) ON DELETE CASCADE)");
+                    stmt.addBatch("CREATE TABLE IF NOT EXISTS sources (" +
+                            "id_source INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "name VARCHAR(64) NOT NULL UNIQUE CHECK (name NOT LIKE '%/%'), " +
+                            "type VARCHAR(10) DEFAULT 'FTP' NOT NULL CHECK (type IN ('FTP', 'FOLDER')), " +
+                            "ftp_server VARCHAR(255), " +
+                            "ftp_username VARCHAR(255), " +
+                            "ftp_password VARCHAR(255), " +
+                            "directory VARCHAR(255) DEFAULT '/' NOT NULL, " +
+                            "prefix VARCHAR(255) DEFAULT 'order' NOT NULL, " +
+                            "interval_min INT DEFAULT 0 NOT NULL, " +
+                            "interval_max INT DEFAULT 0 NOT NULL, " +
+                            "enabled BOOLEAN DEFAULT TRUE NOT NULL)");
+                    stmt.addBatch("CREATE TABLE IF NOT EXISTS routing_rules (" +
+                            "id_rule INT AUTO_INCREMENT PRIMARY KEY, " +
+                            "position INT DEFAULT 0 NOT NULL, " +
+                            "match_on VARCHAR(10) NOT NULL CHECK (match_on IN ('NAME', 'TEXT')), " +
+                            "pattern VARCHAR(255) NOT NULL, " +
+                            "printers VARCHAR(1024) NOT NULL)");
+                    // The server configured before sources existed becomes the default source
+                    stmt.addBatch("INSERT INTO sources (name, ftp_server, ftp_username, ftp_password) " +
+                            "SELECT '" + OrderSource.DEFAULT_NAME + "', s.\"value\", u.\"value\", p.\"value\" FROM configuration s " +
+                            "JOIN configuration u ON u.name = 'ftp_username' " +
+                            "JOIN configuration p ON p.name = 'ftp_password' " +
+                            "WHERE s.name = 'ftp_server' AND NOT EXISTS (SELECT 1 FROM sources WHERE name = '" +
+                            OrderSource.DEFAULT_NAME + "')");
+                    // Deleted orders are only kept for a while, to recognise a file whose deletion was not confirmed
+                    stmt.addBatch("DELETE FROM orders WHERE state = 'DELETED' " +
+                            "AND updated_at < DATEADD('DAY', -" + JOURNAL_RETENTION_DAYS + ", CURRENT_TIMESTAMP)");
+                    stmt.executeBatch();
+                }
+            });
         } catch (SQLException e) {
             ExceptionUtil.handleException(e);
         }
+        getInstance().reloadSnapshot();
     }
 
     public void addConfiguration(String name, String value) {
-        if (value != null && !value.isEmpty()) {
-            String sql = "MERGE INTO configuration (name, \"value\") KEY(name) VALUES (?, ?)";
-            try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, name);
-                stmt.setString(2, value);
-                stmt.executeUpdate();
-            } catch (SQLException e) {
-                ExceptionUtil.handleException(e);
-            }
+        Map<String, String> values = new HashMap<>();
+        values.put(name, value);
+        addConfigurations(values);
+    }
+
+    /**
+     * Add or update several configuration values in a single transaction.
+     * Null or empty values are ignored.
+     */
+    public void addConfigurations(Map<String, String> values) {
+        try {
+            inTransaction(conn -> mergeConfigurations(conn, values));
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
         }
+        reloadSnapshot();
     }
 
     public void addPrinters(List<String> printers) {
         if (printers != null && !printers.isEmpty()) {
-            String sql = "MERGE INTO printers (name) KEY (name) VALUES (?)";
-            try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    for (String printer : printers) {
-                        stmt.setString(1, printer);
-                        stmt.executeUpdate();
-                    }
+            try {
+                inTransaction(conn -> mergePrinters(conn, printers));
             } catch (SQLException e) {
                 ExceptionUtil.handleException(e);
             }
+            reloadSnapshot();
         }
     }
 
     /**
-     * Get all printers
+     * Save the configuration values and replace the selected printers in a single transaction.
+     * Null or empty values are ignored.
+     */
+    public void saveConfiguration(Map<String, String> values, List<String> printers) {
+        saveConfiguration(values, Set.of(), printers);
+    }
+
+    /**
+     * Save the configuration values and replace the selected printers in a single transaction.
      *
-     * @return List<String>.
+     * @param clearable the settings that are deleted, back to their default, when their value is empty
+     *                  instead of being left unchanged.
      */
-    public List<String> getAllPrinter() {
-        List<String> printerNames = new ArrayList<>();
-        String sql = "SELECT name FROM printers";
+    public void saveConfiguration(Map<String, String> values, Set<String> clearable, List<String> printers) {
+        try {
+            inTransaction(conn -> {
+                mergeConfigurations(conn, values);
+                deleteEmptyConfigurations(conn, values, clearable);
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM printers")) {
+                    stmt.executeUpdate();
+                }
+                if (printers != null && !printers.isEmpty()) {
+                    mergePrinters(conn, printers);
+                }
+            });
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+        reloadSnapshot();
+    }
+
+    /**
+     * Add or replace a source of orders, identified by its name.
+     */
+    public void saveSource(OrderSource source) {
+        String sql = "MERGE INTO sources (name, type, ftp_server, ftp_username, ftp_password, directory, prefix, " +
+                "interval_min, interval_max, enabled) KEY (name) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, source.getName());
+            stmt.setString(2, source.getType().name());
+            stmt.setString(3, source.getServer());
+            stmt.setString(4, source.getUsername());
+            stmt.setString(5, source.getPassword());
+            stmt.setString(6, source.getDirectory());
+            stmt.setString(7, source.getPrefix());
+            stmt.setInt(8, source.getMinInterval());
+            stmt.setInt(9, source.getMaxInterval());
+            stmt.setBoolean(10, source.isEnabled());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+        reloadSnapshot();
+    }
 
-            while (rs.next()) {
-                printerNames.add(rs.getString("name"));
-            }
+    /**
+     * Delete a source of orders. Its orders stay in the journal until they expire.
+     */
+    public void delSource(String name) {
+        String sql = "DELETE FROM sources WHERE name = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
         } catch (SQLException e) {
             ExceptionUtil.handleException(e);
         }
-        return printerNames;
+        reloadSnapshot();
+    }
+
+    /**
+     * Replace the routing rules in a single transaction. The order of the list is kept.
+     */
+    public void saveRoutingRules(List<RoutingRule> rules) {
+        try {
+            inTransaction(conn -> {
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM routing_rules")) {
+                    stmt.executeUpdate();
+                }
+                String sql = "INSERT INTO routing_rules (position, match_on, pattern, printers) VALUES (?, ?, ?, ?)";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < rules.size(); i++) {
+                        RoutingRule rule = rules.get(i);
+                        stmt.setInt(1, i);
+                        stmt.setString(2, rule.getTarget().name());
+                        stmt.setString(3, rule.getPattern());
+                        stmt.setString(4, String.join(",", rule.getPrinters()));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+        reloadSnapshot();
+    }
+
+    private static void mergeConfigurations(Connection conn, Map<String, String> values) throws SQLException {
+        String sql = "MERGE INTO configuration (name, \"value\") KEY(name) VALUES (?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                    stmt.setString(1, entry.getKey());
+                    stmt.setString(2, entry.getValue());
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void deleteEmptyConfigurations(Connection conn, Map<String, String> values, Set<String> names)
+            throws SQLException {
+        String sql = "DELETE FROM configuration WHERE name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (String name : names) {
+                String value = values.get(name);
+                if (value == null || value.isEmpty()) {
+                    stmt.setString(1, name);
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void mergePrinters(Connection conn, List<String> printers) throws SQLException {
+        String sql = "MERGE INTO printers (name) KEY (name) VALUES (?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (String printer : printers) {
+                stmt.setString(1, printer);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Get all printers
+     *
+     * @return List<String>.
+     */
+    public List<String> getAllPrinter() {
+        return getSnapshot().getPrinters();
     }
 
     /**
@@ -131,27 +331,191 @@ public class DatabaseModel {
         } catch (SQLException e) {
             ExceptionUtil.handleException(e);
         }
+        reloadSnapshot();
     }
 
     public String getConfiguration(String name) {
         if (name != null && name.isEmpty()) {
             System.out.println("The name is empty, no configuration will be retrieved from the database");
             return null;
-        } else {
-            String sql = "SELECT \"value\" FROM configuration WHERE name = ?";
-            try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, name);
-                try (ResultSet result = stmt.executeQuery()) {
-                    if (result.next()) {
-                        return result.getString("value");
+        }
+        return getSnapshot().get(name);
+    }
+
+    /**
+     * Get a numeric configuration value
+     *
+     * @return the value, or defaultValue if it is missing or not a number.
+     */
+    public int getConfigurationAsInt(String name, int defaultValue) {
+        return getSnapshot().getInt(name, defaultValue);
+    }
+
+    /**
+     * Get the current configuration. The snapshot is loaded from the database on first use and
+     * replaced after every write, reading it never touches the database.
+     *
+     * @return ConfigurationSnapshot.
+     */
+    public ConfigurationSnapshot getSnapshot() {
+        ConfigurationSnapshot current = snapshot;
+        if (current == null) {
+            current = reloadSnapshot();
+        }
+        return current;
+    }
+
+    private synchronized ConfigurationSnapshot reloadSnapshot() {
+        Map<String, String> values = new HashMap<>();
+        List<String> printerNames = new ArrayList<>();
+        List<OrderSource> sources = new ArrayList<>();
+        List<RoutingRule> routingRules = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement configStmt = conn.prepareStatement("SELECT name, \"value\" FROM configuration");
+             PreparedStatement printerStmt = conn.prepareStatement("SELECT name FROM printers");
+             PreparedStatement sourceStmt = conn.prepareStatement("SELECT * FROM sources " +
+                     "ORDER BY CASE WHEN name = '" + OrderSource.DEFAULT_NAME + "' THEN 0 ELSE 1 END, name");
+             PreparedStatement ruleStmt = conn.prepareStatement("SELECT match_on, pattern, printers FROM routing_rules " +
+                     "ORDER BY position, id_rule")) {
+            try (ResultSet rs = configStmt.executeQuery()) {
+                while (rs.next()) {
+                    values.put(rs.getString("name"), rs.getString("value"));
+                }
+            }
+            try (ResultSet rs = printerStmt.executeQuery()) {
+                while (rs.next()) {
+                    printerNames.add(rs.getString("name"));
+                }
+            }
+            try (ResultSet rs = sourceStmt.executeQuery()) {
+                while (rs.next()) {
+                    sources.add(new OrderSource(rs.getString("name"),
+                            OrderSource.Type.valueOf(rs.getString("type")),
+                            rs.getString("ftp_server"),
+                            rs.getString("ftp_username"),
+                            rs.getString("ftp_password"),
+                            rs.getString("directory"),
+                            rs.getString("prefix"),
+                            rs.getInt("interval_min"),
+                            rs.getInt("interval_max"),
+                            rs.getBoolean("enabled")));
+                }
+            }
+            try (ResultSet rs = ruleStmt.executeQuery()) {
+                while (rs.next()) {
+                    List<String> printers = new ArrayList<>();
+                    for (String printer : rs.getString("printers").split(",")) {
+                        if (!printer.isBlank()) {
+                            printers.add(printer.trim());
+                        }
                     }
+                    routingRules.add(new RoutingRule(RoutingRule.Target.valueOf(rs.getString("match_on")),
+                            rs.getString("pattern"), printers));
                 }
-            } catch (SQLException e) {
-                ExceptionUtil.handleException(e);
             }
-            return null;
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+            // Keep the last known configuration, the tables may not have been created yet
+            return snapshot != null ? snapshot : ConfigurationSnapshot.EMPTY;
+        }
+        snapshot = new ConfigurationSnapshot(values, printerNames, sources, routingRules);
+        return snapshot;
+    }
+
+    /**
+     * Record the state of an order in the journal.
+     */
+    public void journalOrder(String fileName, OrderState state) {
+        String sql = "MERGE INTO orders (file_name, state, updated_at) KEY (file_name) VALUES (?, ?, CURRENT_TIMESTAMP)";
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, fileName);
+            stmt.setString(2, state.name());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+    }
+
+    /**
+     * Record that an order has been printed on a printer.
+     */
+    public void journalPrinted(String fileName, String printer) {
+        String sql = "MERGE INTO order_prints (id_order, printer) KEY (id_order, printer) " +
+                "SELECT id_order, ? FROM orders WHERE file_name = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, printer);
+            stmt.setString(2, fileName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+    }
+
+    /**
+     * Get the state of an order
+     *
+     * @return the state, or null if the order is not in the journal.
+     */
+    public OrderState getJournalState(String fileName) {
+        String sql = "SELECT state FROM orders WHERE file_name = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, fileName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return OrderState.valueOf(rs.getString("state"));
+                }
+            }
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Get the printers an order has already been printed on
+     *
+     * @return Set<String>.
+     */
+    public Set<String> getPrintedPrinters(String fileName) {
+        Set<String> printers = new HashSet<>();
+        String sql = "SELECT p.printer FROM order_prints p JOIN orders o ON o.id_order = p.id_order WHERE o.file_name = ?";
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, fileName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    printers.add(rs.getString("printer"));
+                }
+            }
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
+        }
+        return printers;
+    }
+
+    /**
+     * Get the orders of the journal in a given state, oldest first
+     *
+     * @return List<String>.
+     */
+    public List<String> getJournalOrders(OrderState state) {
+        List<String> fileNames = new ArrayList<>();
+        String sql = "SELECT file_name FROM orders WHERE state = ? ORDER BY updated_at";
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, state.name());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fileNames.add(rs.getString("file_name"));
+                }
+            }
+        } catch (SQLException e) {
+            ExceptionUtil.handleException(e);
         }
+        return fileNames;
     }
 
     public static void main(String[] args) {
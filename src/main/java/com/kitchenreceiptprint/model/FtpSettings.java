@@ -0,0 +1,93 @@
+package com.kitchenreceiptprint.model;
+
+/**
+ * Class FtpSettings
+ *
+ * Timeouts, retries and circuit breaker thresholds of the FTP sessions, read from the
+ * configuration keys ftp_connect_timeout, ftp_socket_timeout, ftp_data_timeout (seconds),
+ * ftp_retries, ftp_retry_delay (milliseconds), ftp_breaker_threshold and ftp_breaker_open
+ * (seconds).
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class FtpSettings {
+    public static final FtpSettings DEFAULT = new FtpSettings(10, 30, 30, 3, 500, 3, 30);
+
+    private final int connectTimeoutSeconds;
+    private final int socketTimeoutSeconds;
+    private final int dataTimeoutSeconds;
+    private final int retries;
+    private final int retryDelayMillis;
+    private final int breakerThreshold;
+    private final int breakerOpenSeconds;
+
+    public FtpSettings(int connectTimeoutSeconds, int socketTimeoutSeconds, int dataTimeoutSeconds, int retries,
+                       int retryDelayMillis, int breakerThreshold, int breakerOpenSeconds) {
+        this.connectTimeoutSeconds = Math.max(1, connectTimeoutSeconds);
+        this.socketTimeoutSeconds = Math.max(1, socketTimeoutSeconds);
+        this.dataTimeoutSeconds = Math.max(1, dataTimeoutSeconds);
+        this.retries = Math.max(0, retries);
+        this.retryDelayMillis = Math.max(0, retryDelayMillis);
+        this.breakerThreshold = Math.max(1, breakerThreshold);
+        this.breakerOpenSeconds = Math.max(1, breakerOpenSeconds);
+    }
+
+    public static FtpSettings from(ConfigurationSnapshot config) {
+        return new FtpSettings(
+                config.getInt("ftp_connect_timeout", DEFAULT.connectTimeoutSeconds),
+                config.getInt("ftp_socket_timeout", DEFAULT.socketTimeoutSeconds),
+                config.getInt("ftp_data_timeout", DEFAULT.dataTimeoutSeconds),
+                config.getInt("ftp_retries", DEFAULT.retries),
+                config.getInt("ftp_retry_delay", DEFAULT.retryDelayMillis),
+                config.getInt("ftp_breaker_threshold", DEFAULT.breakerThreshold),
+                config.getInt("ftp_breaker_open", DEFAULT.breakerOpenSeconds));
+    }
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    /**
+     * @return the read timeout of the control connection, in seconds.
+     */
+    public int getSocketTimeoutSeconds() {
+        return socketTimeoutSeconds;
+    }
+
+    /**
+     * @return the read timeout of the data connections (listings and transfers), in seconds.
+     */
+    public int getDataTimeoutSeconds() {
+        return dataTimeoutSeconds;
+    }
+
+    /**
+     * @return how many times a failed operation is retried.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the delay before the first retry in milliseconds, doubled for each of the next ones.
+     */
+    public int getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    /**
+     * @return the number of operations failing in a row that opens the circuit breaker.
+     */
+    public int getBreakerThreshold() {
+        return breakerThreshold;
+    }
+
+    /**
+     * @return how long the circuit breaker stays open before the server is probed again, in seconds.
+     */
+    public int getBreakerOpenSeconds() {
+        return breakerOpenSeconds;
+    }
+}
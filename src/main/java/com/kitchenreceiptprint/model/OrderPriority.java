@@ -0,0 +1,116 @@
+package com.kitchenreceiptprint.model;
+
+import com.kitchenreceiptprint.util.ExceptionUtil;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Class OrderPriority
+ *
+ * Priority levels of the orders, read once when the configuration snapshot is loaded. The level of
+ * an order goes from 0, the most urgent, to 9 and is given by the tag of its file name
+ * (prefix_yyyyMMddHHmmss_tag.pdf) or by the Priority entry of the PDF metadata: either pN, a
+ * number, or a tag listed in priority_tags as tag=level. Other orders get priority_default.
+ *
+ * The orders are scheduled by virtual deadline: their timestamp plus priority_aging seconds per
+ * level. Within a level the oldest order goes first, and an order never waits behind the orders of
+ * a more urgent level received more than level * priority_aging seconds after it, so the least
+ * urgent orders are delayed but never starved.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class OrderPriority {
+    public static final int MOST_URGENT = 0;
+    public static final int LEAST_URGENT = 9;
+    public static final int DEFAULT_LEVEL = 5;
+    public static final int DEFAULT_AGING_SECONDS = 60;
+    static final List<String> DEFAULT_TAGS = List.of("urgent=0", "rush=0");
+
+    private final Map<String, Integer> tags = new HashMap<>();
+    private final int defaultLevel;
+    private final long agingSeconds;
+    private final Comparator<OrderRef> order;
+
+    OrderPriority(List<String> tagLevels, int defaultLevel, int agingSeconds) {
+        for (String entry : tagLevels) {
+            int separator = entry.indexOf('=');
+            try {
+                if (separator <= 0) {
+                    throw new IllegalArgumentException(entry);
+                }
+                tags.put(entry.substring(0, separator).trim().toLowerCase(Locale.ROOT),
+                        clamp(Integer.parseInt(entry.substring(separator + 1).trim())));
+            } catch (IllegalArgumentException e) {
+                ExceptionUtil.handleException(e, "Invalid priority tag ignored: " + entry);
+            }
+        }
+        this.defaultLevel = clamp(defaultLevel);
+        this.agingSeconds = Math.max(0, agingSeconds);
+        this.order = Comparator
+                .comparingLong((OrderRef ref) -> deadline(ref.getSortKey(), levelOrDefault(ref.getTag())))
+                .thenComparing(OrderRef.OLDEST_FIRST);
+    }
+
+    /**
+     * @param value a file name tag or the Priority entry of the PDF metadata, may be null.
+     * @return the level it stands for, or -1 if it is not a priority.
+     */
+    public int levelOf(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        String tag = value.trim().toLowerCase(Locale.ROOT);
+        Integer level = tags.get(tag);
+        if (level != null) {
+            return level;
+        }
+        String number = tag.startsWith("p") ? tag.substring(1) : tag;
+        if (number.length() == 1 && Character.isDigit(number.charAt(0))) {
+            return number.charAt(0) - '0';
+        }
+        return -1;
+    }
+
+    public int levelOrDefault(String value) {
+        int level = levelOf(value);
+        return level < 0 ? defaultLevel : level;
+    }
+
+    public int getDefaultLevel() {
+        return defaultLevel;
+    }
+
+    /**
+     * @param arrivalSeconds timestamp of the order, on the clock of OrderRef.getSortKey.
+     * @return the scheduling key of the order, the smallest goes first.
+     */
+    public long deadline(long arrivalSeconds, int level) {
+        return arrivalSeconds + level * agingSeconds;
+    }
+
+    /**
+     * @return the order in which the orders should be submitted, by virtual deadline.
+     */
+    public Comparator<OrderRef> getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the current time on the clock of the file names, the local time read as UTC.
+     */
+    public static long now() {
+        return LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static int clamp(int level) {
+        return Math.max(MOST_URGENT, Math.min(LEAST_URGENT, level));
+    }
+}
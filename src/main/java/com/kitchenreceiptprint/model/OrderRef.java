@@ -0,0 +1,85 @@
+package com.kitchenreceiptprint.model;
+
+import java.util.Comparator;
+
+/**
+ * Class OrderRef
+ *
+ * Immutable reference to an order file found on the FTP server. The timestamp encoded in the file
+ * name is parsed once at discovery and kept as a numeric sort key, so ordering the orders never
+ * parses the name again. The optional tag of the name, e.g. "urgent" in
+ * order_20261017120000_urgent.pdf, gives the priority of the order, see OrderPriority.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class OrderRef {
+    // Oldest order first, the file name breaks ties between orders of the same second.
+    public static final Comparator<OrderRef> OLDEST_FIRST = Comparator
+            .comparingLong(OrderRef::getSortKey)
+            .thenComparing(OrderRef::getFileName);
+
+    private final String fileName;
+    private final long sortKey;
+    private final long size;
+    private final String tag;
+
+    public OrderRef(String fileName, long sortKey, long size) {
+        this(fileName, sortKey, size, null);
+    }
+
+    public OrderRef(String fileName, long sortKey, long size, String tag) {
+        this.fileName = fileName;
+        this.sortKey = sortKey;
+        this.size = size;
+        this.tag = tag;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the timestamp of the order in epoch seconds.
+     */
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * @return the size of the file as listed by the server, or -1 if unknown.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the tag following the timestamp in the file name, or null if there is none.
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OrderRef)) {
+            return false;
+        }
+        OrderRef other = (OrderRef) o;
+        return sortKey == other.sortKey && size == other.size && fileName.equals(other.fileName);
+    }
+
+    @Override
+    public int hashCode() {
+        return fileName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return fileName;
+    }
+}
@@ -0,0 +1,103 @@
+package com.kitchenreceiptprint.model;
+
+import com.kitchenreceiptprint.util.ExceptionUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Class OrderRouter
+ *
+ * Routing rules compiled once, when the configuration snapshot is loaded. For every page of an
+ * order it gives the printers the page is meant for: the printers of every NAME rule matching the
+ * order name and of every TEXT rule matching the text of the page. A page matched by no rule goes
+ * to the printers of routing_fallback, or to every printer when that key is empty.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class OrderRouter {
+    static final OrderRouter NONE = new OrderRouter(List.of(), List.of());
+
+    private final List<CompiledRule> nameRules = new ArrayList<>();
+    private final List<CompiledRule> textRules = new ArrayList<>();
+    // Null when unmatched pages go to every printer
+    private final Set<String> fallback;
+
+    private static final class CompiledRule {
+        private final Pattern pattern;
+        private final List<String> printers;
+
+        private CompiledRule(Pattern pattern, List<String> printers) {
+            this.pattern = pattern;
+            this.printers = printers;
+        }
+    }
+
+    OrderRouter(List<RoutingRule> rules, List<String> fallback) {
+        for (RoutingRule rule : rules) {
+            try {
+                CompiledRule compiled = new CompiledRule(
+                        Pattern.compile(rule.getPattern(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
+                        rule.getPrinters());
+                (rule.getTarget() == RoutingRule.Target.NAME ? nameRules : textRules).add(compiled);
+            } catch (PatternSyntaxException e) {
+                ExceptionUtil.handleException(e, "Invalid routing rule ignored: " + rule);
+            }
+        }
+        this.fallback = fallback.isEmpty() ? null : Collections.unmodifiableSet(new HashSet<>(fallback));
+    }
+
+    /**
+     * @return true if there is no rule, every page goes to every printer.
+     */
+    public boolean isEmpty() {
+        return nameRules.isEmpty() && textRules.isEmpty();
+    }
+
+    /**
+     * @return true if a rule needs the text of the pages.
+     */
+    public boolean needsText() {
+        return !textRules.isEmpty();
+    }
+
+    /**
+     * Route every page of an order.
+     *
+     * @param fileName  name of the order.
+     * @param pageCount number of pages.
+     * @param pageText  text of a page, only called if needsText is true.
+     * @return for each page, the printers it is meant for, or null for every printer.
+     */
+    public List<Set<String>> route(String fileName, int pageCount, IntFunction<String> pageText) {
+        Set<String> orderPrinters = new HashSet<>();
+        for (CompiledRule rule : nameRules) {
+            if (rule.pattern.matcher(fileName).find()) {
+                orderPrinters.addAll(rule.printers);
+            }
+        }
+
+        List<Set<String>> routes = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            Set<String> printers = new HashSet<>(orderPrinters);
+            if (!textRules.isEmpty()) {
+                String text = pageText.apply(i);
+                for (CompiledRule rule : textRules) {
+                    if (rule.pattern.matcher(text).find()) {
+                        printers.addAll(rule.printers);
+                    }
+                }
+            }
+            routes.add(printers.isEmpty() ? fallback : printers);
+        }
+        return routes;
+    }
+}
@@ -0,0 +1,142 @@
+package com.kitchenreceiptprint.model;
+
+/**
+ * Class OrderSource
+ *
+ * Immutable row of the sources table: an FTP server polled for orders, with its credentials, the
+ * remote directory and file prefix of the orders and its own polling intervals, or a local folder
+ * (type FOLDER, e.g. a mounted share) watched for new orders. The source named "default" is the
+ * one edited in the configuration screen.
+ *
+ * Orders are recorded in the journal under a key qualified by the source, so two sources may
+ * deliver files with the same name. The default source keeps the bare file name, which matches
+ * the journal written before sources were introduced.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class OrderSource {
+    public static final String DEFAULT_NAME = "default";
+    public static final String DEFAULT_DIRECTORY = "/";
+    public static final String DEFAULT_PREFIX = "order";
+
+    public enum Type {
+        FTP,
+        FOLDER
+    }
+
+    private final String name;
+    private final Type type;
+    private final String server;
+    private final String username;
+    private final String password;
+    private final String directory;
+    private final String prefix;
+    private final int minInterval;
+    private final int maxInterval;
+    private final boolean enabled;
+
+    /**
+     * @param type        FTP, or FOLDER for a local folder whose path is the directory.
+     * @param password    the password as stored in the database, i.e. encrypted.
+     * @param minInterval polling interval while orders keep arriving, 0 to use interval_min.
+     * @param maxInterval polling interval upper bound, 0 to use interval.
+     */
+    public OrderSource(String name, Type type, String server, String username, String password, String directory,
+                       String prefix, int minInterval, int maxInterval, boolean enabled) {
+        this.name = name;
+        this.type = type;
+        this.server = server;
+        this.username = username;
+        this.password = password;
+        this.directory = directory == null || directory.isEmpty() ? DEFAULT_DIRECTORY : directory;
+        this.prefix = prefix == null || prefix.isEmpty() ? DEFAULT_PREFIX : prefix;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.enabled = enabled;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the orders are read from a local folder instead of an FTP server.
+     */
+    public boolean isFolder() {
+        return type == Type.FOLDER;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return the FTP password as stored in the database, i.e. encrypted.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the minimum polling interval in seconds, or 0 to use the global interval_min.
+     */
+    public int getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * @return the maximum polling interval in seconds, or 0 to use the global interval.
+     */
+    public int getMaxInterval() {
+        return maxInterval;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isDefault() {
+        return DEFAULT_NAME.equals(name);
+    }
+
+    /**
+     * @return the key of an order of this source in the journal.
+     */
+    public String journalKey(String fileName) {
+        return isDefault() ? fileName : name + "/" + fileName;
+    }
+
+    /**
+     * @return the file name of a journal key belonging to this source, or null if it belongs to another one.
+     */
+    public String fileNameOf(String journalKey) {
+        int separator = journalKey.indexOf('/');
+        if (isDefault()) {
+            return separator < 0 ? journalKey : null;
+        }
+        return separator == name.length() && journalKey.startsWith(name) ? journalKey.substring(separator + 1) : null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
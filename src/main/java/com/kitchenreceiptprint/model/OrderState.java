@@ -0,0 +1,18 @@
+package com.kitchenreceiptprint.model;
+
+/**
+ * Enum OrderState
+ *
+ * Steps of an order recorded in the orders journal. The printers that already printed an order
+ * are recorded separately, so an order interrupted while printing is only sent to the missing ones.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public enum OrderState {
+    DISCOVERED,
+    DOWNLOADED,
+    PRINTED,
+    DELETED
+}
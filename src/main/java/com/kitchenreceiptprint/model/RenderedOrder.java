@@ -0,0 +1,141 @@
+package com.kitchenreceiptprint.model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class RenderedOrder
+ *
+ * Pages of an order rasterized once at a given resolution. The same images are handed to the
+ * print job of every printer, so the PDF is only parsed and rendered once per order.
+ *
+ * When routing rules apply, each page carries the printers it is meant for and the pages meant
+ * for none of the printers the order is printed on are not rendered at all.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class RenderedOrder {
+    private final String fileName;
+    private final int dpi;
+    private final List<BufferedImage> pages;
+    // Printers of each page, a null entry or list means every printer
+    private final List<Set<String>> routes;
+    private final String priority;
+
+    public RenderedOrder(String fileName, int dpi, List<BufferedImage> pages) {
+        this(fileName, dpi, pages, null, null);
+    }
+
+    /**
+     * @param pages    the rendered pages, null for the pages routed to no printer.
+     * @param routes   the printers of each page as given by OrderRouter, or null for every printer.
+     * @param priority the Priority entry of the PDF metadata, or null if it has none.
+     */
+    public RenderedOrder(String fileName, int dpi, List<BufferedImage> pages, List<Set<String>> routes,
+                         String priority) {
+        this.fileName = fileName;
+        this.dpi = dpi;
+        this.pages = Collections.unmodifiableList(pages);
+        this.routes = routes;
+        this.priority = priority;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    /**
+     * @return the Priority entry of the PDF metadata, or null if it has none.
+     */
+    public String getPriority() {
+        return priority;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public BufferedImage getPage(int pageIndex) {
+        return pages.get(pageIndex);
+    }
+
+    /**
+     * @return the memory used by the rendered images, in bytes.
+     */
+    public long getImageBytes() {
+        long bytes = 0;
+        for (BufferedImage page : pages) {
+            if (page != null) {
+                DataBuffer buffer = page.getRaster().getDataBuffer();
+                bytes += (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the indexes of the pages meant for a printer.
+     */
+    public List<Integer> getPagesFor(String printer) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            Set<String> printers = routes != null ? routes.get(i) : null;
+            if (printers == null || printers.contains(printer)) {
+                indexes.add(i);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * @return true if every page meant for at least one printer is rendered, i.e. the order was not
+     * rendered for some of its printers only.
+     */
+    public boolean hasEveryRoutedPage() {
+        for (int i = 0; i < pages.size(); i++) {
+            Set<String> printers = routes != null ? routes.get(i) : null;
+            if (pages.get(i) == null && (printers == null || !printers.isEmpty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the same order restricted to some of its pages, sharing the rendered images.
+     */
+    public RenderedOrder select(List<Integer> pageIndexes) {
+        if (routes == null && pageIndexes.size() == pages.size()) {
+            return this;
+        }
+        List<BufferedImage> selected = new ArrayList<>(pageIndexes.size());
+        for (int index : pageIndexes) {
+            selected.add(pages.get(index));
+        }
+        return new RenderedOrder(fileName, dpi, selected);
+    }
+
+    /**
+     * @return the width of a page in points (1/72 inch).
+     */
+    public double getPageWidth(int pageIndex) {
+        return pages.get(pageIndex).getWidth() * 72.0 / dpi;
+    }
+
+    /**
+     * @return the height of a page in points (1/72 inch).
+     */
+    public double getPageHeight(int pageIndex) {
+        return pages.get(pageIndex).getHeight() * 72.0 / dpi;
+    }
+}
@@ -0,0 +1,51 @@
+package com.kitchenreceiptprint.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class RoutingRule
+ *
+ * Immutable row of the routing_rules table: a regular expression searched, case-insensitively, in
+ * the name of an order or in the text of each of its pages, and the printers receiving what it
+ * matches. Printers are the names of the printers table or the targets of escpos_targets.
+ *
+ * Author: Artisan Webmaster
+ * Creation Date: 10/17/2026
+ * Last Modification: 10/17/2026
+ */
+public final class RoutingRule {
+    public enum Target {
+        // The rule matches the name of the order and routes all its pages
+        NAME,
+        // The rule matches the text of a page and routes that page only
+        TEXT
+    }
+
+    private final Target target;
+    private final String pattern;
+    private final List<String> printers;
+
+    public RoutingRule(Target target, String pattern, List<String> printers) {
+        this.target = target;
+        this.pattern = pattern;
+        this.printers = Collections.unmodifiableList(printers);
+    }
+
+    public Target getTarget() {
+        return target;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public List<String> getPrinters() {
+        return printers;
+    }
+
+    @Override
+    public String toString() {
+        return target + " " + pattern + " -> " + printers;
+    }
+}
@@ -0,0 +1,86 @@
+package com.kitchenreceiptprint.util;
+
+/**
+ * Circuit breaker shared by the FTP sessions of a source. After a number of operations failing in
+ * a row the breaker opens and the operations fail at once, without touching the network. Once the
+ * open delay has elapsed a single probe is let through: its success closes the breaker, its
+ * failure opens it again for twice as long, up to MAX_OPEN_FACTOR times the configured delay.
+ */
+public class CircuitBreakerUtil {
+    private static final int MAX_OPEN_FACTOR = 10;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int threshold;
+    private final long openMillis;
+    private final MessageUtil messageUtil;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long currentOpenMillis;
+    private long openUntil;
+
+    /**
+     * @param name        name of the protected resource, used in the messages.
+     * @param threshold   number of failures in a row that opens the breaker.
+     * @param openSeconds delay before the first probe once the breaker is open.
+     */
+    public CircuitBreakerUtil(String name, int threshold, int openSeconds, MessageUtil messageUtil) {
+        this.name = name;
+        this.threshold = Math.max(1, threshold);
+        this.openMillis = Math.max(1, openSeconds) * 1000L;
+        this.currentOpenMillis = this.openMillis;
+        this.messageUtil = messageUtil;
+    }
+
+    /**
+     * Ask to run an operation.
+     *
+     * @return CLOSED to run it normally, HALF_OPEN to run it as the single probe, OPEN to fail at once.
+     */
+    public synchronized State acquire() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+            state = State.HALF_OPEN;
+            return State.HALF_OPEN;
+        }
+        // While a probe is running the other callers keep failing fast
+        return state == State.HALF_OPEN ? State.OPEN : state;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            messageUtil.appendMessage(name + " de nouveau joignable");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        currentOpenMillis = openMillis;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN) {
+            currentOpenMillis = Math.min(currentOpenMillis * 2, openMillis * MAX_OPEN_FACTOR);
+            open();
+        } else if (state == State.CLOSED && failures >= threshold) {
+            open();
+        }
+    }
+
+    /**
+     * @return the number of seconds before the next probe, 0 if the breaker is not open.
+     */
+    public synchronized long getRetryInSeconds() {
+        return state == State.CLOSED ? 0 : Math.max(0, (openUntil - System.currentTimeMillis() + 999) / 1000);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + currentOpenMillis;
+        messageUtil.appendMessage(name + " injoignable, nouvel essai dans " + currentOpenMillis / 1000 + " s");
+    }
+}
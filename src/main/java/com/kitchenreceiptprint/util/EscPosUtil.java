@@ -0,0 +1,139 @@
+package com.kitchenreceiptprint.util;
+
+import com.kitchenreceiptprint.model.RenderedOrder;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * Converts rendered orders to ESC/POS commands and sends them to thermal printers without going
+ * through the printer driver. Every page is sent as a 1-bit raster image (GS v 0), followed by a
+ * paper feed and a partial cut at the end of the order.
+ *
+ * Targets given to send are either "tcp://host:port" (network printers, usually port 9100) or a
+ * file, e.g. a device such as /dev/usb/lp0 or a plain file used as a fake printer.
+ */
+public class EscPosUtil {
+    private static final int BAND_HEIGHT = 256;
+    private static final int BLACK_THRESHOLD = 128;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private static final byte[] INITIALIZE = {0x1B, 0x40};
+    private static final byte[] FEED_AND_CUT = {0x1B, 0x64, 0x03, 0x1D, 0x56, 0x42, 0x00};
+
+    /**
+     * Convert every page of an order to ESC/POS raster commands.
+     *
+     * @param maxWidth printable width of the printer in dots (576 for most 80 mm printers),
+     *                 wider pages are scaled down to fit.
+     */
+    public static byte[] toEscPos(RenderedOrder order, int maxWidth) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(INITIALIZE);
+        for (int i = 0; i < order.getPageCount(); i++) {
+            writeRaster(order.getPage(i), maxWidth, out);
+        }
+        out.writeBytes(FEED_AND_CUT);
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a page as GS v 0 raster bands. Trailing blank rows are not sent, receipts often end
+     * with a large empty area of the PDF page.
+     */
+    public static void writeRaster(BufferedImage page, int maxWidth, ByteArrayOutputStream out) {
+        BufferedImage image = toGray(page, maxWidth);
+        Raster raster = image.getRaster();
+        int width = image.getWidth();
+        int bytesPerRow = (width + 7) / 8;
+        int[] row = new int[width];
+
+        int height = image.getHeight();
+        while (height > 0 && isBlank(raster.getSamples(0, height - 1, width, 1, 0, row))) {
+            height--;
+        }
+
+        for (int top = 0; top < height; top += BAND_HEIGHT) {
+            int bandHeight = Math.min(BAND_HEIGHT, height - top);
+            out.write(0x1D);
+            out.write(0x76);
+            out.write(0x30);
+            out.write(0x00);
+            out.write(bytesPerRow & 0xFF);
+            out.write((bytesPerRow >> 8) & 0xFF);
+            out.write(bandHeight & 0xFF);
+            out.write((bandHeight >> 8) & 0xFF);
+
+            byte[] data = new byte[bytesPerRow];
+            for (int y = top; y < top + bandHeight; y++) {
+                raster.getSamples(0, y, width, 1, 0, row);
+                Arrays.fill(data, (byte) 0);
+                for (int x = 0; x < width; x++) {
+                    if (row[x] < BLACK_THRESHOLD) {
+                        data[x >> 3] |= (byte) (0x80 >> (x & 7));
+                    }
+                }
+                out.write(data, 0, bytesPerRow);
+            }
+        }
+    }
+
+    /**
+     * Send ESC/POS commands to a network printer ("tcp://host:port") or a file.
+     */
+    public static void send(String target, byte[] data) throws IOException {
+        if (target.startsWith("tcp://")) {
+            String address = target.substring("tcp://".length());
+            int separator = address.lastIndexOf(':');
+            String host = separator > 0 ? address.substring(0, separator) : address;
+            int port = separator > 0 ? Integer.parseInt(address.substring(separator + 1).trim()) : 9100;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                OutputStream out = socket.getOutputStream();
+                out.write(data);
+                out.flush();
+            }
+        } else {
+            String path = target.startsWith("file:") ? target.substring("file:".length()) : target;
+            // Appending also works for devices, and keeps every ticket when a file is used as a fake printer
+            try (OutputStream out = new FileOutputStream(path, true)) {
+                out.write(data);
+            }
+        }
+    }
+
+    private static BufferedImage toGray(BufferedImage page, int maxWidth) {
+        if (page.getType() == BufferedImage.TYPE_BYTE_GRAY && page.getWidth() <= maxWidth) {
+            return page;
+        }
+        int width = Math.min(page.getWidth(), maxWidth);
+        int height = (int) Math.round(page.getHeight() * (double) width / page.getWidth());
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2 = gray.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(page, 0, 0, width, height, null);
+        } finally {
+            g2.dispose();
+        }
+        return gray;
+    }
+
+    private static boolean isBlank(int[] row) {
+        for (int sample : row) {
+            if (sample < BLACK_THRESHOLD) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package com.kitchenreceiptprint.util;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission control for the PDF documents held in memory. Each document reserves an estimate of
+ * its heap use before it is loaded and gives it back once rendered, so the documents loaded at the
+ * same time never exceed the budget. The waiting documents are admitted in arrival order, and a
+ * document larger than the whole budget is admitted alone.
+ */
+public class MemoryBudgetUtil {
+    // The semaphore counts KiB, so budgets of several gigabytes fit in its int permits
+    private static final int UNIT_BYTES = 1024;
+
+    private final Semaphore units;
+    private final int budgetUnits;
+
+    /**
+     * @param budgetBytes heap the documents may use together.
+     */
+    public MemoryBudgetUtil(long budgetBytes) {
+        this.budgetUnits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / UNIT_BYTES));
+        this.units = new Semaphore(budgetUnits, true);
+    }
+
+    /**
+     * Reserve memory for a document, waiting until enough of the budget is free.
+     *
+     * @param bytes estimated heap use of the document, capped at the budget.
+     * @return the reservation, to close once the document is released.
+     */
+    public Permit acquire(long bytes) throws InterruptedException {
+        int requested = (int) Math.max(1, Math.min(budgetUnits, (bytes + UNIT_BYTES - 1) / UNIT_BYTES));
+        units.acquire(requested);
+        return new Permit(requested);
+    }
+
+    /**
+     * @return true if a reservation of that size would have to wait.
+     */
+    public boolean wouldWait(long bytes) {
+        return Math.min(budgetUnits, (bytes + UNIT_BYTES - 1) / UNIT_BYTES) > units.availablePermits();
+    }
+
+    public long getBudgetBytes() {
+        return (long) budgetUnits * UNIT_BYTES;
+    }
+
+    public long getAvailableBytes() {
+        return (long) units.availablePermits() * UNIT_BYTES;
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final int reserved;
+        private boolean released;
+
+        private Permit(int reserved) {
+            this.reserved = reserved;
+        }
+
+        /**
+         * @return the reserved memory in bytes.
+         */
+        public long getBytes() {
+            return (long) reserved * UNIT_BYTES;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                units.release(reserved);
+            }
+        }
+    }
+}
@@ -1,16 +1,196 @@
 package com.kitchenreceiptprint.util;
 
-import javafx.application.Platform;
-import javafx.scene.control.TextArea;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
+/**
+ * Event log of the application. Messages are published into a fixed-size lock-free ring buffer,
+ * so appending never blocks and never allocates more than one entry, whatever the thread.
+ *
+ * Consumers read the ring through their own Reader: the main window drains it when told of new messages
+ * into a capped list, and a background thread writes every message to a rolling log file
+ * (kitchenreceiptprint0.log ... kitchenreceiptprint4.log in the user directory, 1 MB each, or the
+ * JUL file pattern given by -Dkitchenreceiptprint.log). A reader that falls more than a full ring
+ * behind skips the overwritten messages instead of slowing the writers down.
+ *
+ * A status, e.g. the scheduling decision of a source, is a message published under a key: it is
+ * written to the log file like any other message, but the main window only keeps the latest status
+ * of each key, so a routine repeated on every cycle never pushes the other messages out.
+ */
 public class MessageUtil {
-    private final TextArea textArea;
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final long FILE_FLUSH_MILLIS = 250;
+    private static final int FILE_LIMIT_BYTES = 1024 * 1024;
+    private static final int FILE_COUNT = 5;
 
-    public MessageUtil(TextArea textArea) {
-        this.textArea = textArea;
+    private final AtomicReferenceArray<Entry> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile Thread fileWriter;
+    private volatile Runnable listener;
+
+    private static final class Entry {
+        private final long sequence;
+        private final long timestamp;
+        private final String key;
+        private final String message;
+
+        private Entry(long sequence, long timestamp, String key, String message) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.key = key;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Cursor over the messages, to be used by a single consumer thread.
+     */
+    public final class Reader {
+        private long position;
+
+        private Reader(long position) {
+            this.position = position;
+        }
+
+        /**
+         * Pass the messages published since the last call to the sink, at most max of them.
+         *
+         * @return the number of messages passed to the sink.
+         */
+        public int drain(Consumer<String> sink, int max) {
+            return drainEntries(entry -> sink.accept(entry.message), max);
+        }
+
+        /**
+         * Same as drain, the sink also receiving the key of the statuses, null for the other messages.
+         */
+        public int drainWithKeys(BiConsumer<String, String> sink, int max) {
+            return drainEntries(entry -> sink.accept(entry.key, entry.message), max);
+        }
+
+        private int drainEntries(Consumer<Entry> sink, int max) {
+            long end = nextSequence.get();
+            if (end - position > CAPACITY) {
+                position = end - CAPACITY;
+            }
+            int drained = 0;
+            while (position < end && drained < max) {
+                Entry entry = ring.get((int) (position & MASK));
+                if (entry == null || entry.sequence < position) {
+                    // The sequence is claimed but the writer has not stored the message yet
+                    break;
+                }
+                if (entry.sequence == position) {
+                    sink.accept(entry);
+                    drained++;
+                }
+                position++;
+            }
+            return drained;
+        }
     }
 
     public void appendMessage(String message) {
-        Platform.runLater(() -> textArea.appendText(message + "\n"));
+        publish(null, message);
+    }
+
+    /**
+     * Publish a status, replacing in the main window the previous status of the same key.
+     */
+    public void appendStatus(String key, String message) {
+        publish(key, message);
+    }
+
+    private void publish(String key, String message) {
+        long sequence = nextSequence.getAndIncrement();
+        Entry entry = new Entry(sequence, System.currentTimeMillis(), key, message);
+        int slot = (int) (sequence & MASK);
+        Entry current;
+        do {
+            current = ring.get(slot);
+            // A writer a full ring ahead already reused the slot, this message is lost for the readers
+            if (current != null && current.sequence > sequence) {
+                break;
+            }
+        } while (!ring.compareAndSet(slot, current, entry));
+        if (fileWriter == null) {
+            startFileWriter();
+        }
+        Runnable notify = listener;
+        if (notify != null) {
+            notify.run();
+        }
+    }
+
+    /**
+     * Be told of every new message, e.g. to schedule a drain only when there is something to read.
+     * The listener runs on the thread that publishes the message and must return quickly.
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return a reader starting at the oldest message still in the ring.
+     */
+    public Reader newReader() {
+        return new Reader(Math.max(0, nextSequence.get() - CAPACITY));
+    }
+
+    private synchronized void startFileWriter() {
+        if (fileWriter != null) {
+            return;
+        }
+        Reader reader = newReader();
+        Logger logger = fileLogger();
+        fileWriter = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                reader.drainEntries(entry -> {
+                    LogRecord record = new LogRecord(Level.INFO, entry.message);
+                    record.setInstant(Instant.ofEpochMilli(entry.timestamp));
+                    logger.log(record);
+                }, CAPACITY);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(FILE_FLUSH_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "message-log");
+        fileWriter.setDaemon(true);
+        fileWriter.start();
+    }
+
+    private static Logger fileLogger() {
+        Logger logger = Logger.getLogger("com.kitchenreceiptprint.messages");
+        logger.setUseParentHandlers(false);
+        if (logger.getHandlers().length == 0) {
+            try {
+                String pattern = System.getProperty("kitchenreceiptprint.log", "%h/kitchenreceiptprint%g.log");
+                FileHandler handler = new FileHandler(pattern, FILE_LIMIT_BYTES, FILE_COUNT, true);
+                handler.setEncoding("UTF-8");
+                handler.setFormatter(new Formatter() {
+                    @Override
+                    public String format(LogRecord record) {
+                        return String.format("%1$tF %1$tT %2$s%n", record.getMillis(), record.getMessage());
+                    }
+                });
+                logger.addHandler(handler);
+            } catch (IOException e) {
+                ExceptionUtil.handleException(e, "Unable to open the log file");
+            }
+        }
+        return logger;
     }
 }
@@ -0,0 +1,296 @@
+package com.kitchenreceiptprint.util;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and throughput metrics of the processing stages (FTP connect, listing, download, PDF
+ * rendering, printing and deletion), exposed as platform MXBeans so they can be watched live in
+ * JConsole or collected by any JMX client.
+ *
+ * Each stage is registered under "com.kitchenreceiptprint:type=Stage,name=<stage>" the first time
+ * it is recorded, and the print stage is also broken down per printer under
+ * "com.kitchenreceiptprint:type=Printer,name=<printer>"; the order counters are registered under
+ * "com.kitchenreceiptprint:type=Orders" and only count the stages, so no operation is counted twice.
+ * Recording only touches atomic counters and never blocks the pipeline threads.
+ */
+public class MetricsUtil {
+    public static final String FTP_CONNECT = "ftp_connect";
+    public static final String FTP_LIST = "ftp_list";
+    public static final String DOWNLOAD = "download";
+    public static final String PDF_RENDER = "pdf_render";
+    public static final String PRINT = "print";
+    public static final String DELETE = "delete";
+
+    private static final String DOMAIN = "com.kitchenreceiptprint";
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private static final Map<String, Stage> stages = new ConcurrentHashMap<>();
+    private static final Map<String, Stage> printers = new ConcurrentHashMap<>();
+    private static final Orders orders = new Orders();
+
+    static {
+        register(DOMAIN + ":type=Orders", orders);
+    }
+
+    public interface StageMXBean {
+        long getCount();
+
+        long getFailures();
+
+        double getMeanMillis();
+
+        long getMaxMillis();
+
+        long getP50Millis();
+
+        long getP95Millis();
+
+        long getP99Millis();
+
+        /**
+         * @return the number of operations per latency bucket, keyed by the upper bound of the bucket.
+         */
+        Map<String, Long> getHistogram();
+
+        void reset();
+    }
+
+    public interface OrdersMXBean {
+        long getOrdersPrinted();
+
+        long getOrdersPerMinute();
+
+        long getBytesDownloaded();
+
+        long getFailures();
+    }
+
+    /**
+     * @return the start time of an operation, to pass to record.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the duration of an operation of a stage.
+     *
+     * @param startNanos value returned by start when the operation began.
+     */
+    public static void record(String stage, long startNanos, boolean success) {
+        stage(stage).record(System.nanoTime() - startNanos, success);
+    }
+
+    /**
+     * Record the printing of an order on a printer, in the print stage and in the breakdown per printer.
+     *
+     * @param startNanos value returned by start when the operation began.
+     */
+    public static void recordPrint(String printer, long startNanos, boolean success) {
+        long nanos = System.nanoTime() - startNanos;
+        stage(PRINT).record(nanos, success);
+        stage(printers, "Printer", printer).record(nanos, success);
+    }
+
+    public static void addBytes(long bytes) {
+        orders.bytes.add(bytes);
+    }
+
+    public static void orderPrinted() {
+        orders.printed();
+    }
+
+    private static Stage stage(String name) {
+        return stage(stages, "Stage", name);
+    }
+
+    private static Stage stage(Map<String, Stage> registry, String type, String name) {
+        Stage stage = registry.get(name);
+        if (stage == null) {
+            Stage created = new Stage();
+            stage = registry.putIfAbsent(name, created);
+            if (stage == null) {
+                stage = created;
+                register(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name), created);
+            }
+        }
+        return stage;
+    }
+
+    private static void register(String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+            }
+        } catch (JMException e) {
+            ExceptionUtil.handleException(e, "Unable to register the metrics " + name);
+        }
+    }
+
+    private static final class Stage implements StageMXBean {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+        private void record(long nanos, boolean success) {
+            count.increment();
+            if (!success) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / n;
+        }
+
+        @Override
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        @Override
+        public long getP50Millis() {
+            return percentile(0.50);
+        }
+
+        @Override
+        public long getP95Millis() {
+            return percentile(0.95);
+        }
+
+        @Override
+        public long getP99Millis() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public Map<String, Long> getHistogram() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length(); i++) {
+                String bound = i < BUCKET_BOUNDS_MILLIS.length ? "<=" + BUCKET_BOUNDS_MILLIS[i] + "ms" : ">" + BUCKET_BOUNDS_MILLIS[i - 1] + "ms";
+                histogram.put(bound, buckets.get(i));
+            }
+            return histogram;
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            failures.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the quantile, never above the maximum.
+         */
+        private long percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(BUCKET_BOUNDS_MILLIS[i], getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+    }
+
+    private static final class Orders implements OrdersMXBean {
+        private static final int WINDOW_SECONDS = 60;
+
+        private final LongAdder printed = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        // Orders printed during each of the last 60 seconds, slot i holding the second seconds[i]
+        private final AtomicLongArray perSecond = new AtomicLongArray(WINDOW_SECONDS);
+        private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+
+        private void printed() {
+            printed.increment();
+            long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            int slot = (int) (now % WINDOW_SECONDS);
+            long previous = seconds.get(slot);
+            if (previous != now && seconds.compareAndSet(slot, previous, now)) {
+                perSecond.set(slot, 0);
+            }
+            perSecond.incrementAndGet(slot);
+        }
+
+        @Override
+        public long getOrdersPrinted() {
+            return printed.sum();
+        }
+
+        @Override
+        public long getOrdersPerMinute() {
+            long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            long total = 0;
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if (now - seconds.get(i) < WINDOW_SECONDS) {
+                    total += perSecond.get(i);
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public long getBytesDownloaded() {
+            return bytes.sum();
+        }
+
+        @Override
+        public long getFailures() {
+            long total = 0;
+            for (Stage stage : stages.values()) {
+                total += stage.getFailures();
+            }
+            return total;
+        }
+    }
+}
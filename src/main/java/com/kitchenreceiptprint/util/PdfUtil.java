@@ -0,0 +1,60 @@
+package com.kitchenreceiptprint.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checks on raw PDF bytes, used to tell a complete order from one that is still being written or
+ * uploaded: a PDF ends with the %%EOF marker of its trailer, which is written last.
+ */
+public class PdfUtil {
+    private static final byte[] PDF_TRAILER = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+    // The marker may be followed by a line ending, or by junk bytes left by some generators
+    public static final int TRAILER_SEARCH_BYTES = 1024;
+    // Custom entry of the document information giving the priority of an order
+    public static final String PRIORITY_KEY = "Priority";
+
+    /**
+     * @return true if the last TRAILER_SEARCH_BYTES bytes hold the %%EOF marker, which may be followed
+     * by line endings or junk bytes.
+     */
+    public static boolean endsWithTrailer(byte[] bytes, int length) {
+        int from = Math.max(0, length - TRAILER_SEARCH_BYTES);
+        for (int start = length - PDF_TRAILER.length; start >= from; start--) {
+            if (matchesTrailer(bytes, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesTrailer(byte[] bytes, int start) {
+        for (int i = 0; i < PDF_TRAILER.length; i++) {
+            if (bytes[start + i] != PDF_TRAILER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the file ends with the %%EOF marker of a complete PDF, see endsWithTrailer(byte[], int).
+     */
+    public static boolean endsWithTrailer(Path file, long size) throws IOException {
+        int length = (int) Math.min(size, TRAILER_SEARCH_BYTES);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = size - length;
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, position + tail.position()) < 0) {
+                    return false;
+                }
+            }
+        }
+        return endsWithTrailer(tail.array(), length);
+    }
+}
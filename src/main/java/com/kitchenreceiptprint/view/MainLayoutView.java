@@ -5,11 +5,15 @@ import com.kitchenreceiptprint.util.LocalizationUtil;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ChoiceDialog;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
 import javafx.scene.layout.VBox;
 import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.ResourceBundle;
 
 public class MainLayoutView {
@@ -30,4 +34,26 @@ public class MainLayoutView {
             ExceptionUtil.handleException(e);
         }
     }
+
+    /**
+     * Ask which cached order to reprint.
+     *
+     * @param orders the keys of the cached orders, the most recent first.
+     * @return the chosen order, empty if cancelled or if there is no order.
+     */
+    public static Optional<String> chooseOrderToReprint(List<String> orders) {
+        ResourceBundle lang = LocalizationUtil.getResourceBundle();
+        if (orders.isEmpty()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, lang.getString("reprintempty"));
+            alert.setTitle(lang.getString("reprint"));
+            alert.setHeaderText(null);
+            alert.showAndWait();
+            return Optional.empty();
+        }
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(orders.get(0), orders);
+        dialog.setTitle(lang.getString("reprint"));
+        dialog.setHeaderText(null);
+        dialog.setContentText(lang.getString("reprintorder"));
+        return dialog.showAndWait();
+    }
 }
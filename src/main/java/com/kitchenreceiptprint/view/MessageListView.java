@@ -0,0 +1,80 @@
+package com.kitchenreceiptprint.view;
+
+import com.kitchenreceiptprint.util.MessageUtil;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListView;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Displays the messages of a MessageUtil. A drain is scheduled on the JavaFX thread when messages
+ * are published, at most one at a time, and adds them in a single batch; nothing runs while
+ * nothing is logged. Only the most recent messages are kept, so the cost of the view stays the
+ * same however long the application runs. Older messages remain available in the log file.
+ * A status replaces the previous status of the same key, which moves to the end of the list.
+ */
+public class MessageListView extends ListView<String> {
+    private static final int MAX_ITEMS = 1000;
+    private static final int MAX_PER_DRAIN = 500;
+
+    private final List<String> batch = new ArrayList<>();
+    // Latest status shown for each key, compared by identity as two messages may have the same text
+    private final Map<String, String> statuses = new HashMap<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private MessageUtil.Reader reader;
+
+    public void attach(MessageUtil messageUtil) {
+        reader = messageUtil.newReader();
+        messageUtil.setListener(this::scheduleDrain);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+    }
+
+    private void drain() {
+        // Cleared first, a message published during the drain schedules the next one
+        drainScheduled.set(false);
+        ObservableList<String> items = getItems();
+        int drained = reader.drainWithKeys((key, message) -> {
+            if (key != null) {
+                String previous = statuses.put(key, message);
+                if (previous != null && !removeSame(batch, previous)) {
+                    removeSame(items, previous);
+                }
+            }
+            batch.add(message);
+        }, MAX_PER_DRAIN);
+        if (drained == 0) {
+            return;
+        }
+        items.addAll(batch);
+        batch.clear();
+        if (items.size() > MAX_ITEMS) {
+            items.remove(0, items.size() - MAX_ITEMS);
+        }
+        scrollTo(items.size() - 1);
+        if (drained == MAX_PER_DRAIN) {
+            // More may be waiting, they are drained on the next pulse
+            scheduleDrain();
+        }
+    }
+
+    private static boolean removeSame(List<String> list, String item) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == item) {
+                list.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,14 +3,21 @@ module com.kitchenreceiptprint {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires com.h2database;
     requires jbcrypt;
     requires java.desktop;
+    requires java.logging;
+    requires java.management;
     requires org.apache.commons.net;
     requires org.apache.pdfbox;
+    requires org.apache.pdfbox.io;
 
     opens com.kitchenreceiptprint to javafx.fxml;
     opens com.kitchenreceiptprint.controller to javafx.fxml;
+    opens com.kitchenreceiptprint.view to javafx.fxml;
 
     exports com.kitchenreceiptprint;
     opens com.kitchenreceiptprint.util to javafx.fxml;
+    // The metrics MXBean interfaces are introspected by the platform MBean server
+    exports com.kitchenreceiptprint.util to java.management;
 }